@@ -6,7 +6,9 @@ import com.j256.ormlite.support.ConnectionSource;
 import crest.jira.data.miner.config.ConfigurationProvider;
 import crest.jira.data.miner.csv.BaseCsvGenerator;
 import crest.jira.data.miner.csv.CsvExportSupport;
+import crest.jira.data.miner.db.AnalysisSnapshot;
 import crest.jira.data.miner.db.JiraIssueListDao;
+import crest.jira.data.miner.db.SqliteConnectionProfile;
 import crest.jira.data.miner.report.model.ExtendedIssue;
 import crest.jira.data.miner.report.model.ExtendedUser;
 import crest.jira.data.miner.report.model.JiraIssueBag;
@@ -25,6 +27,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 
 public class GenerateConsolidatedCsvFiles extends BaseCsvGenerator {
 
@@ -33,6 +36,9 @@ public class GenerateConsolidatedCsvFiles extends BaseCsvGenerator {
   private static final String RELEASE_FILE_PREFIX = "Board_";
   private static final String ALLBOARDS_KEY = "ALLBOARDS";
   public static final String FOLDER_NAME = "C:/Users/Carlos G. Gavidia/OneDrive/phd2/jira_data/";
+  // The files only need the analysis attributes stored at extraction time, so
+  // change logs can be skipped.
+  private static final boolean ANALYSIS_ONLY = Boolean.getBoolean("jira.analysis.analysisOnly");
 
   private static Dao<Board, String> boardDao;
 
@@ -40,6 +46,10 @@ public class GenerateConsolidatedCsvFiles extends BaseCsvGenerator {
     super(FOLDER_NAME);
   }
 
+  public GenerateConsolidatedCsvFiles(String outputFolder) {
+    super(outputFolder);
+  }
+
   /**
    * Analyzes the Testers moves per time frame. *
    * 
@@ -56,7 +66,10 @@ public class GenerateConsolidatedCsvFiles extends BaseCsvGenerator {
 
     try {
       ConfigurationProvider configProvider = new ConfigurationProvider();
-      ConnectionSource connectionSource = configProvider.getConnectionSource();
+      ConnectionSource connectionSource = SqliteConnectionProfile
+          .fromSystemProperties(SqliteConnectionProfile.ANALYSIS)
+          .createConnectionSource(configProvider.getConnectionSource());
+      SqliteConnectionProfile.getEffectivePragmas(connectionSource);
 
       GenerateConsolidatedCsvFiles generator = new GenerateConsolidatedCsvFiles();
 
@@ -78,6 +91,10 @@ public class GenerateConsolidatedCsvFiles extends BaseCsvGenerator {
   private void processAllBoards(ConnectionSource connectionSource)
       throws SQLException, IOException {
     JiraIssueListDao analyser = new JiraIssueListDao(connectionSource);
+    analyser.setChangeLogFields(JiraIssueListDao.PRIORITY_FIELD);
+    analyser.setSnapshot(AnalysisSnapshot.fromSystemProperties(connectionSource),
+        AnalysisSnapshot.CSV_EXPORT_FIELDS);
+    analyser.setAnalysisOnly(ANALYSIS_ONLY);
     analyser.loadAllBugs();
 
     MultiValuedMap<String, ExtendedIssue> issuesPerBoard = analyser.organizeInBoards();
@@ -95,16 +112,40 @@ public class GenerateConsolidatedCsvFiles extends BaseCsvGenerator {
   private void processBoard(ConnectionSource connectionSource, String boardId, boolean onlyBugs)
       throws SQLException, IOException {
     JiraIssueListDao issueListDao = new JiraIssueListDao(connectionSource);
+    issueListDao.setChangeLogFields(JiraIssueListDao.PRIORITY_FIELD);
+    issueListDao.setSnapshot(AnalysisSnapshot.fromSystemProperties(connectionSource),
+        AnalysisSnapshot.CSV_EXPORT_FIELDS);
+    issueListDao.setAnalysisOnly(ANALYSIS_ONLY);
     issueListDao.loadBoardIssues(boardId, onlyBugs);
-    generateCsvFile(ISSUES_FILE_PREFIX + boardId, issueListDao.getIssueList());
+    exportBoard(boardId, issueListDao.getIssueList(), issueListDao.organizeInReleases(),
+        issueListDao.getReporterCatalogPerBoard(boardId));
+  }
+
+  /**
+   * Writes the issue, release and reporter files of a board.
+   * 
+   * @param boardId
+   *          Board identifier.
+   * @param issues
+   *          Issues of the board.
+   * @param issuesInGroups
+   *          Issues of the board per closest release.
+   * @param reporterCatalog
+   *          Reporters of the board.
+   * @throws IOException
+   *           In case of file writing issues.
+   */
+  public void exportBoard(String boardId, List<ExtendedIssue> issues,
+      MultiValuedMap<Version, ExtendedIssue> issuesInGroups, Set<ExtendedUser> reporterCatalog)
+      throws IOException {
+    generateCsvFile(ISSUES_FILE_PREFIX + boardId, issues);
 
-    MultiValuedMap<Version, ExtendedIssue> issuesInGroups = issueListDao.organizeInReleases();
     List<JiraIssueBag<Version>> issueBags = getBagsPerTimePeriod(issuesInGroups,
         new ReleaseDateComparator());
 
     generateCsvFile(RELEASE_FILE_PREFIX + boardId, issueBags);
 
-    Object[] reporters = issueListDao.getReporterCatalogPerBoard(boardId).toArray();
+    Object[] reporters = reporterCatalog.toArray();
     List<CsvExportSupport> userIssueBags = getBagsPerUser(reporters, issueBags);
     generateCsvFile(REPORTERS_FILE_PREFIX + boardId, userIssueBags);
 
@@ -0,0 +1,138 @@
+package crest.jira.data.miner.benchmark;
+
+import com.j256.ormlite.support.ConnectionSource;
+
+import crest.jira.data.miner.GenerateConsolidatedCsvFiles;
+import crest.jira.data.miner.config.ConfigurationProvider;
+import crest.jira.data.miner.db.AnalysisSnapshot;
+import crest.jira.data.miner.db.Durations;
+import crest.jira.data.miner.db.IssueGroupingIndex;
+import crest.jira.data.miner.db.JiraIssueListDao;
+import crest.jira.data.miner.db.SqliteConnectionProfile;
+import crest.jira.data.miner.report.model.ExtendedIssue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+public class ExportBenchmark {
+
+  private static Logger logger = Logger.getLogger(ExportBenchmark.class.getName());
+
+  private static final int ITERATIONS = Integer.getInteger("jira.benchmark.iterations", 5);
+
+  /**
+   * Loads a board once and exports its issue, release and reporter files,
+   * with the derived metrics of every issue calculated on every call and
+   * calculated once. Every export works on fresh copies of the issues, so
+   * memoized metrics are calculated once per export, as in a real run. Files
+   * are written to a temporary folder, deleted at the end.
+   *
+   * @param args
+   *          The board to export.
+   * @throws Exception
+   *           In case of SQL or file errors, or if both modes produce
+   *           different records.
+   */
+  public static void main(String... args) throws Exception {
+    if (args.length == 0) {
+      throw new IllegalArgumentException("Usage: ExportBenchmark <boardId>");
+    }
+
+    String boardId = args[0];
+    ConnectionSource connectionSource = SqliteConnectionProfile
+        .fromSystemProperties(SqliteConnectionProfile.ANALYSIS)
+        .createConnectionSource(new ConfigurationProvider().getConnectionSource());
+
+    File outputFolder = Files.createTempDirectory("jira-export-benchmark").toFile();
+
+    try {
+      JiraIssueListDao issueListDao = new JiraIssueListDao(connectionSource);
+      issueListDao.setChangeLogFields(JiraIssueListDao.PRIORITY_FIELD);
+      issueListDao.setSnapshot(AnalysisSnapshot.fromSystemProperties(connectionSource),
+          AnalysisSnapshot.CSV_EXPORT_FIELDS);
+      issueListDao.loadBoardIssues(boardId, false);
+      List<ExtendedIssue> issues = issueListDao.getIssueList();
+
+      if (!describe(copy(issues, false)).equals(describe(copy(issues, true)))) {
+        throw new Exception("Memoized metrics differ from calculated ones on board " + boardId);
+      }
+      logger.info("Both modes produce the same records for " + issues.size() + " issues.");
+
+      GenerateConsolidatedCsvFiles generator = new GenerateConsolidatedCsvFiles(
+          outputFolder.getAbsolutePath() + File.separator);
+      export(generator, boardId, issues, false);
+      export(generator, boardId, issues, true);
+
+      double calculatedSeconds = measure(generator, boardId, issues, false);
+      double memoizedSeconds = measure(generator, boardId, issues, true);
+
+      logger.info("Metrics calculated on every call: " + calculatedSeconds
+          + " seconds per export.");
+      logger.info("Metrics memoized: " + memoizedSeconds + " seconds per export (speed-up: "
+          + calculatedSeconds / memoizedSeconds + ").");
+    } finally {
+      for (File file : outputFolder.listFiles()) {
+        file.delete();
+      }
+      outputFolder.delete();
+      connectionSource.close();
+    }
+  }
+
+  private static double measure(GenerateConsolidatedCsvFiles generator, String boardId,
+      List<ExtendedIssue> issues, boolean areMetricsMemoized) throws IOException {
+    long start = System.nanoTime();
+    for (int iteration = 0; iteration < ITERATIONS; iteration += 1) {
+      export(generator, boardId, issues, areMetricsMemoized);
+    }
+
+    return Durations.toSeconds(System.nanoTime() - start) / ITERATIONS;
+  }
+
+  private static void export(GenerateConsolidatedCsvFiles generator, String boardId,
+      List<ExtendedIssue> issues, boolean areMetricsMemoized) throws IOException {
+    List<ExtendedIssue> boardIssues = copy(issues, areMetricsMemoized);
+    IssueGroupingIndex groupingIndex = new IssueGroupingIndex(boardIssues);
+
+    generator.exportBoard(boardId, boardIssues, groupingIndex.organizeInReleases(),
+        groupingIndex.getReporterCatalogPerBoard(boardId));
+  }
+
+  /**
+   * Copies the issues without their CSV records or derived metrics. The copies
+   * share the issue and the version rank table of the originals.
+   */
+  private static List<ExtendedIssue> copy(List<ExtendedIssue> issues,
+      boolean areMetricsMemoized) {
+    List<ExtendedIssue> copies = new ArrayList<>(issues.size());
+    for (ExtendedIssue extendedIssue : issues) {
+      ExtendedIssue copy = new ExtendedIssue(extendedIssue.getIssue(),
+          extendedIssue.getOriginalPriority(), extendedIssue.isDoesPriorityChanged(),
+          extendedIssue.getResolutionTime(), extendedIssue.isResolved(),
+          extendedIssue.isAcceptedByDevTeam());
+      if (extendedIssue.hasProjectVersions()) {
+        copy.setVersionRankTable(extendedIssue.getVersionRankTable());
+      }
+      copy.setMetricsMemoized(areMetricsMemoized);
+      copies.add(copy);
+    }
+
+    return copies;
+  }
+
+  private static List<String> describe(List<ExtendedIssue> issues) {
+    List<String> descriptions = new ArrayList<>();
+    for (ExtendedIssue extendedIssue : issues) {
+      descriptions.add(extendedIssue.getCsvRecord() + " inflated="
+          + extendedIssue.isInflated() + " defaultInflation="
+          + extendedIssue.isDefaultInflation());
+    }
+
+    return descriptions;
+  }
+
+}
@@ -0,0 +1,136 @@
+package crest.jira.data.miner.benchmark;
+
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+
+import crest.jira.data.miner.db.Durations;
+import crest.jira.data.miner.db.ExtractionPipeline;
+import crest.jira.data.miner.db.JiraDataExtractor;
+import crest.jira.data.miner.db.SqliteConnectionProfile;
+import crest.jira.data.retriever.JiraApiConfiguration;
+import crest.jira.data.retriever.model.Board;
+import crest.jira.data.retriever.model.ChangeLogItem;
+import crest.jira.data.retriever.model.ClosedSprintPerIssue;
+import crest.jira.data.retriever.model.Comment;
+import crest.jira.data.retriever.model.Component;
+import crest.jira.data.retriever.model.ComponentPerIssue;
+import crest.jira.data.retriever.model.CustomFieldsCatalog;
+import crest.jira.data.retriever.model.Epic;
+import crest.jira.data.retriever.model.FixVersionPerIssue;
+import crest.jira.data.retriever.model.History;
+import crest.jira.data.retriever.model.Issue;
+import crest.jira.data.retriever.model.IssueType;
+import crest.jira.data.retriever.model.Priority;
+import crest.jira.data.retriever.model.Project;
+import crest.jira.data.retriever.model.ProjectCategory;
+import crest.jira.data.retriever.model.Resolution;
+import crest.jira.data.retriever.model.Sprint;
+import crest.jira.data.retriever.model.Status;
+import crest.jira.data.retriever.model.StatusCategory;
+import crest.jira.data.retriever.model.SubtaskPerIssue;
+import crest.jira.data.retriever.model.User;
+import crest.jira.data.retriever.model.Version;
+import crest.jira.data.retriever.model.VersionPerIssue;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+public class ExtractionBenchmark {
+
+  private static Logger logger = Logger.getLogger(ExtractionBenchmark.class.getName());
+
+  private static final int BOARDS = Integer.getInteger("jira.benchmark.boards", 4);
+  private static final int ISSUES_PER_BOARD = Integer.getInteger("jira.benchmark.issuesPerBoard",
+      500);
+  private static final int HISTORIES_PER_ISSUE = Integer
+      .getInteger("jira.benchmark.historiesPerIssue", 5);
+  private static final int SPRINTS_PER_BOARD = Integer.getInteger("jira.benchmark.sprintsPerBoard",
+      10);
+  private static final int VERSIONS_PER_BOARD = Integer
+      .getInteger("jira.benchmark.versionsPerBoard", 10);
+
+  private static final String BENCHMARK_USER = "benchmark";
+
+  private static final List<Class<?>> ENTITY_CLASSES = Arrays.<Class<?>>asList(Board.class,
+      Epic.class, Sprint.class, Issue.class, CustomFieldsCatalog.class, Resolution.class,
+      Priority.class, IssueType.class, User.class, Comment.class, History.class,
+      ChangeLogItem.class, Project.class, ProjectCategory.class, Status.class,
+      StatusCategory.class, Component.class, ComponentPerIssue.class, SubtaskPerIssue.class,
+      Version.class, FixVersionPerIssue.class, VersionPerIssue.class,
+      ClosedSprintPerIssue.class);
+
+  /**
+   * Runs the complete extraction against an embedded fake JIRA server, writing
+   * to a temporary SQLite database. The JIRA configuration file is not read:
+   * The extraction is configured with the URL of the fake server. The size of the synthetic data set is
+   * configured through the jira.benchmark.* system properties, and the
+   * extraction itself through the usual jira.extractor.* properties.
+   *
+   * @param args
+   *          Not used.
+   * @throws Exception
+   *           Many things can go wrong ...
+   */
+  public static void main(String... args) throws Exception {
+    FakeJiraServer server = new FakeJiraServer(BOARDS, ISSUES_PER_BOARD, HISTORIES_PER_ISSUE,
+        SPRINTS_PER_BOARD, VERSIONS_PER_BOARD);
+    server.start();
+
+    File databaseFile = File.createTempFile("jira-benchmark", ".db");
+    ConnectionSource connectionSource = SqliteConnectionProfile
+        .fromSystemProperties(SqliteConnectionProfile.EXTRACTION)
+        .createConnectionSource("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+
+    try {
+      createTables(connectionSource);
+      JiraApiConfiguration apiConfiguration = new JiraApiConfiguration(
+          server.getBaseUri().toString(), BENCHMARK_USER, BENCHMARK_USER);
+
+      long start = System.nanoTime();
+      ExtractionPipeline pipeline = JiraDataExtractor.extract(connectionSource, apiConfiguration);
+      double wallSeconds = Durations.toSeconds(System.nanoTime() - start);
+
+      long issuesWritten = DaoManager.createDao(connectionSource, Issue.class).countOf();
+      long historiesWritten = DaoManager.createDao(connectionSource, History.class).countOf();
+
+      logger.info("Issues served: " + server.getTotalIssues() + ". Issues written: "
+          + issuesWritten + ". Histories written: " + historiesWritten);
+      logger.info("Wall time: " + wallSeconds + " seconds. " + issuesWritten / wallSeconds
+          + " issues/sec.");
+      logger.info("Requests served: " + server.getRequestsServed() + ". Bytes served: "
+          + server.getBytesServed() + " (" + server.getBytesServed() / wallSeconds
+          + " bytes/sec).");
+
+      for (String stage : Arrays.asList(ExtractionPipeline.FETCH_STAGE,
+          ExtractionPipeline.TRANSFORM_STAGE, ExtractionPipeline.WRITE_STAGE)) {
+        logger.info("Stage " + stage + ": " + pipeline.getStageSeconds(stage) + " seconds.");
+      }
+    } finally {
+      connectionSource.close();
+      server.stop();
+
+      if (!databaseFile.delete()) {
+        logger.warning("Cannot delete the benchmark database " + databaseFile);
+      }
+    }
+  }
+
+  /**
+   * Creates the tables of every entity the extraction writes, if missing.
+   *
+   * @param connectionSource
+   *          Connection source.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public static void createTables(ConnectionSource connectionSource) throws SQLException {
+    for (Class<?> entityClass : ENTITY_CLASSES) {
+      TableUtils.createTableIfNotExists(connectionSource, entityClass);
+    }
+  }
+
+}
@@ -0,0 +1,586 @@
+package crest.jira.data.miner.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+public class FakeJiraServer {
+
+  private static Logger logger = Logger.getLogger(FakeJiraServer.class.getName());
+
+  private static final String REST_PREFIX = "/rest/";
+  private static final String BOARD_PATH = "/rest/agile/1.0/board";
+  private static final String FIELD_PATH = "/rest/api/2/field";
+
+  private static final int HTTP_OK = 200;
+  private static final int HTTP_NOT_FOUND = 404;
+  private static final int DEFAULT_PAGE_SIZE = 50;
+  private static final int USERS = 25;
+
+  private static final long BASE_TIME = 1420070400000L;
+  private static final long MILLISECONDS_IN_A_DAY = 86400000L;
+
+  private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter
+      .ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ").withZone(ZoneOffset.UTC);
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd")
+      .withZone(ZoneOffset.UTC);
+
+  private static final String[] PRIORITIES = { "Blocker", "Critical", "Major", "Minor",
+      "Trivial" };
+  private static final String[] ISSUE_TYPES = { "Bug", "Improvement", "Task" };
+  private static final String[] STATUSES = { "Open", "In Progress", "Resolved", "Closed" };
+
+  private int boards;
+  private int issuesPerBoard;
+  private int historiesPerIssue;
+  private int sprintsPerBoard;
+  private int versionsPerBoard;
+
+  private HttpServer httpServer;
+  private ExecutorService executor;
+  private ObjectMapper objectMapper = new ObjectMapper();
+
+  private AtomicLong bytesServed = new AtomicLong();
+  private AtomicLong requestsServed = new AtomicLong();
+
+  /**
+   * An embedded stand-in for the JIRA Agile REST API, that serves synthetic
+   * boards, sprints, epics, versions, fields and issues with change log. All
+   * the data is generated on each request, so the memory used by the server
+   * does not depend on the size of the data set.
+   *
+   * @param boards
+   *          Number of boards.
+   * @param issuesPerBoard
+   *          Issues served per board.
+   * @param historiesPerIssue
+   *          Change log histories per issue.
+   * @param sprintsPerBoard
+   *          Sprints per board.
+   * @param versionsPerBoard
+   *          Versions per board. The same number of epics is served.
+   */
+  public FakeJiraServer(int boards, int issuesPerBoard, int historiesPerIssue,
+      int sprintsPerBoard, int versionsPerBoard) {
+    this.boards = boards;
+    this.issuesPerBoard = issuesPerBoard;
+    this.historiesPerIssue = historiesPerIssue;
+    this.sprintsPerBoard = sprintsPerBoard;
+    this.versionsPerBoard = versionsPerBoard;
+  }
+
+  /**
+   * Starts listening on an ephemeral port of the loopback interface.
+   *
+   * @throws IOException
+   *           If the server cannot be started.
+   */
+  public void start() throws IOException {
+    httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    httpServer.createContext("/", new HttpHandler() {
+
+      public void handle(HttpExchange exchange) throws IOException {
+        handleRequest(exchange);
+      }
+    });
+
+    executor = Executors.newCachedThreadPool();
+    httpServer.setExecutor(executor);
+    httpServer.start();
+
+    logger.info("Fake JIRA server listening on " + getBaseUri() + ". Boards: " + boards
+        + ", issues per board: " + issuesPerBoard + ", histories per issue: "
+        + historiesPerIssue);
+  }
+
+  /**
+   * Stops the server.
+   */
+  public void stop() {
+    httpServer.stop(0);
+    executor.shutdownNow();
+  }
+
+  public URI getBaseUri() {
+    return URI.create("http://" + httpServer.getAddress().getHostString() + ":"
+        + httpServer.getAddress().getPort());
+  }
+
+  public long getBytesServed() {
+    return bytesServed.get();
+  }
+
+  public long getRequestsServed() {
+    return requestsServed.get();
+  }
+
+  public long getTotalIssues() {
+    return (long) boards * issuesPerBoard;
+  }
+
+  private void handleRequest(HttpExchange exchange) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    int restIndex = path.indexOf(REST_PREFIX);
+    if (restIndex > 0) {
+      // Ignores the context path of the JIRA instance, if any.
+      path = path.substring(restIndex);
+    }
+
+    Map<String, String> parameters = getQueryParameters(exchange.getRequestURI());
+    int startAt = getIntParameter(parameters, "startAt", 0);
+    int maxResults = getIntParameter(parameters, "maxResults", DEFAULT_PAGE_SIZE);
+
+    Object response = null;
+    if (FIELD_PATH.equals(path)) {
+      response = getFields();
+    } else if (BOARD_PATH.equals(path)) {
+      response = getValuesPage(startAt, maxResults, boards, new ValueFactory() {
+
+        public Object create(int index) {
+          return getBoard(index + 1);
+        }
+      });
+    } else if (path.startsWith(BOARD_PATH + "/")) {
+      response = getBoardResource(path.substring(BOARD_PATH.length() + 1).split("/"), startAt,
+          maxResults);
+    }
+
+    if (response == null) {
+      logger.warning("Resource not available on the fake server: " + exchange.getRequestURI());
+      exchange.sendResponseHeaders(HTTP_NOT_FOUND, -1);
+      exchange.close();
+      return;
+    }
+
+    byte[] content = objectMapper.writeValueAsBytes(response);
+    exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+    exchange.sendResponseHeaders(HTTP_OK, content.length);
+    try (OutputStream outputStream = exchange.getResponseBody()) {
+      outputStream.write(content);
+    }
+
+    bytesServed.addAndGet(content.length);
+    requestsServed.incrementAndGet();
+  }
+
+  private Object getBoardResource(String[] segments, int startAt, int maxResults) {
+    final int boardId;
+    try {
+      boardId = Integer.parseInt(segments[0]);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+
+    if (boardId < 1 || boardId > boards) {
+      return null;
+    }
+
+    if (segments.length == 1) {
+      return getBoard(boardId);
+    }
+
+    String resource = segments[1];
+    if (segments.length == 2 && "sprint".equals(resource)) {
+      return getValuesPage(startAt, maxResults, sprintsPerBoard, new ValueFactory() {
+
+        public Object create(int index) {
+          return getSprint(boardId, index);
+        }
+      });
+    } else if (segments.length == 2 && "epic".equals(resource)) {
+      return getValuesPage(startAt, maxResults, versionsPerBoard, new ValueFactory() {
+
+        public Object create(int index) {
+          return getEpic(boardId, index);
+        }
+      });
+    } else if (segments.length == 2 && "version".equals(resource)) {
+      return getValuesPage(startAt, maxResults, versionsPerBoard, new ValueFactory() {
+
+        public Object create(int index) {
+          return getVersion(boardId, index);
+        }
+      });
+    } else if (segments.length == 2 && "issue".equals(resource)) {
+      return getIssuesPage(boardId, startAt, maxResults, issuesPerBoard);
+    } else if (segments.length == 4 && "sprint".equals(resource) && "issue".equals(segments[3])) {
+      // All issues are served per board, so the sprint fallback is never used.
+      return getIssuesPage(boardId, startAt, maxResults, 0);
+    }
+
+    return null;
+  }
+
+  private interface ValueFactory {
+
+    Object create(int index);
+  }
+
+  private static Map<String, Object> getValuesPage(int startAt, int maxResults, int total,
+      ValueFactory valueFactory) {
+    List<Object> values = new ArrayList<>();
+    int end = Math.min(total, startAt + maxResults);
+    for (int index = startAt; index < end; index += 1) {
+      values.add(valueFactory.create(index));
+    }
+
+    Map<String, Object> page = new LinkedHashMap<>();
+    page.put("maxResults", maxResults);
+    page.put("startAt", startAt);
+    page.put("total", total);
+    page.put("isLast", end >= total);
+    page.put("values", values);
+    return page;
+  }
+
+  private Map<String, Object> getIssuesPage(int boardId, int startAt, int maxResults,
+      int total) {
+    List<Object> issues = new ArrayList<>();
+    int end = Math.min(total, startAt + maxResults);
+    for (int index = startAt; index < end; index += 1) {
+      issues.add(getIssue(boardId, index));
+    }
+
+    Map<String, Object> page = new LinkedHashMap<>();
+    page.put("expand", "schema,names");
+    page.put("startAt", startAt);
+    page.put("maxResults", maxResults);
+    page.put("total", total);
+    page.put("issues", issues);
+    return page;
+  }
+
+  private List<Object> getFields() {
+    List<Object> fields = new ArrayList<>();
+    for (String fieldId : Arrays.asList("summary", "issuetype", "project", "priority", "status",
+        "resolution", "resolutiondate", "created", "updated", "reporter", "assignee", "creator",
+        "versions", "fixVersions", "components", "subtasks", "labels", "comment")) {
+      fields.add(getField(fieldId, fieldId, false));
+    }
+
+    fields.add(getField("customfield_10000", "Epic Link", true));
+    fields.add(getField("customfield_10001", "Story Points", true));
+    return fields;
+  }
+
+  private static Map<String, Object> getField(String id, String name, boolean custom) {
+    Map<String, Object> schema = new LinkedHashMap<>();
+    schema.put("type", "string");
+    schema.put(custom ? "custom" : "system", id);
+
+    Map<String, Object> field = new LinkedHashMap<>();
+    field.put("id", id);
+    field.put("name", name);
+    field.put("custom", custom);
+    field.put("orderable", true);
+    field.put("navigable", true);
+    field.put("searchable", true);
+    field.put("clauseNames", Collections.singletonList(custom ? "cf[" + id + "]" : id));
+    field.put("schema", schema);
+    return field;
+  }
+
+  private Map<String, Object> getBoard(int boardId) {
+    Map<String, Object> board = new LinkedHashMap<>();
+    board.put("id", boardId);
+    board.put("self", getBaseUri() + BOARD_PATH + "/" + boardId);
+    board.put("name", "Board " + boardId);
+    board.put("type", "scrum");
+    return board;
+  }
+
+  private Map<String, Object> getSprint(int boardId, int index) {
+    long start = BASE_TIME + index * 14 * MILLISECONDS_IN_A_DAY;
+
+    Map<String, Object> sprint = new LinkedHashMap<>();
+    sprint.put("id", getSprintId(boardId, index));
+    sprint.put("self", getBaseUri() + "/rest/agile/1.0/sprint/" + getSprintId(boardId, index));
+    sprint.put("state", "closed");
+    sprint.put("name", "Sprint " + (index + 1));
+    sprint.put("startDate", formatDateTime(start));
+    sprint.put("endDate", formatDateTime(start + 14 * MILLISECONDS_IN_A_DAY));
+    sprint.put("completeDate", formatDateTime(start + 14 * MILLISECONDS_IN_A_DAY));
+    sprint.put("originBoardId", boardId);
+    return sprint;
+  }
+
+  private Map<String, Object> getEpic(int boardId, int index) {
+    Map<String, Object> color = new HashMap<>();
+    color.put("key", "color_" + (index % 8 + 1));
+
+    Map<String, Object> epic = new LinkedHashMap<>();
+    epic.put("id", boardId * 1000 + index);
+    epic.put("key", getProjectKey(boardId) + "-E" + (index + 1));
+    epic.put("self", getBaseUri() + "/rest/agile/1.0/epic/" + (boardId * 1000 + index));
+    epic.put("name", "Epic " + (index + 1));
+    epic.put("summary", "Synthetic epic " + (index + 1));
+    epic.put("color", color);
+    epic.put("done", false);
+    return epic;
+  }
+
+  private Map<String, Object> getVersion(int boardId, int index) {
+    Map<String, Object> version = new LinkedHashMap<>();
+    version.put("self", getBaseUri() + "/rest/api/2/version/" + getVersionId(boardId, index));
+    version.put("id", String.valueOf(getVersionId(boardId, index)));
+    version.put("name", "1." + index + ".0");
+    version.put("archived", false);
+    version.put("released", true);
+    version.put("releaseDate", DATE_FORMAT
+        .format(Instant.ofEpochMilli(BASE_TIME + (index + 1) * 30 * MILLISECONDS_IN_A_DAY)));
+    version.put("projectId", getProjectId(boardId));
+    return version;
+  }
+
+  private Map<String, Object> getIssue(int boardId, int index) {
+    String issueId = String.valueOf(getIssueId(boardId, index));
+    String issueKey = getProjectKey(boardId) + "-" + (index + 1);
+    long created = BASE_TIME + (index % 365) * MILLISECONDS_IN_A_DAY;
+    long updated = created + historiesPerIssue * MILLISECONDS_IN_A_DAY;
+    boolean resolved = index % 4 != 0;
+
+    Map<String, Object> fields = new LinkedHashMap<>();
+    fields.put("summary", "Synthetic issue " + issueKey);
+    fields.put("issuetype", getIssueType(index % ISSUE_TYPES.length));
+    fields.put("project", getProject(boardId));
+    fields.put("priority", getPriority(index % PRIORITIES.length));
+    fields.put("status", getStatus(resolved ? 2 : 0));
+    fields.put("resolution", resolved ? getResolution() : null);
+    fields.put("resolutiondate", resolved ? formatDateTime(updated) : null);
+    fields.put("created", formatDateTime(created));
+    fields.put("updated", formatDateTime(updated));
+    fields.put("reporter", getUser(index % USERS));
+    fields.put("assignee", getUser((index + 1) % USERS));
+    fields.put("creator", getUser(index % USERS));
+    fields.put("labels", Collections.emptyList());
+    fields.put("subtasks", Collections.emptyList());
+
+    if (versionsPerBoard > 0) {
+      int versionIndex = index % versionsPerBoard;
+      fields.put("versions",
+          Collections.singletonList(getVersionReference(boardId, versionIndex)));
+      fields.put("fixVersions", Collections.singletonList(
+          getVersionReference(boardId, Math.min(versionIndex + 1, versionsPerBoard - 1))));
+    } else {
+      fields.put("versions", Collections.emptyList());
+      fields.put("fixVersions", Collections.emptyList());
+    }
+
+    Map<String, Object> component = new LinkedHashMap<>();
+    component.put("id", String.valueOf(boardId * 10 + index % 3));
+    component.put("name", "Component " + (index % 3 + 1));
+    fields.put("components", Collections.singletonList(component));
+
+    if (sprintsPerBoard > 0) {
+      fields.put("closedSprints",
+          Collections.singletonList(getSprint(boardId, index % sprintsPerBoard)));
+    }
+
+    Map<String, Object> comments = new LinkedHashMap<>();
+    comments.put("comments", Collections.emptyList());
+    comments.put("maxResults", 0);
+    comments.put("total", 0);
+    comments.put("startAt", 0);
+    fields.put("comment", comments);
+
+    fields.put("customfield_10000", null);
+    fields.put("customfield_10001", (double) (index % 8 + 1));
+
+    List<Object> histories = new ArrayList<>();
+    for (int historyIndex = 0; historyIndex < historiesPerIssue; historyIndex += 1) {
+      histories.add(getHistory(issueId, index, historyIndex, created));
+    }
+
+    Map<String, Object> changelog = new LinkedHashMap<>();
+    changelog.put("startAt", 0);
+    changelog.put("maxResults", histories.size());
+    changelog.put("total", histories.size());
+    changelog.put("histories", histories);
+
+    Map<String, Object> issue = new LinkedHashMap<>();
+    issue.put("expand", "operations,changelog");
+    issue.put("id", issueId);
+    issue.put("self", getBaseUri() + "/rest/agile/1.0/issue/" + issueId);
+    issue.put("key", issueKey);
+    issue.put("fields", fields);
+    issue.put("changelog", changelog);
+    return issue;
+  }
+
+  private Map<String, Object> getHistory(String issueId, int issueIndex, int historyIndex,
+      long created) {
+    Map<String, Object> item = new LinkedHashMap<>();
+    if (historyIndex % 2 == 0) {
+      int from = (issueIndex + historyIndex) % PRIORITIES.length;
+      int to = (from + 1) % PRIORITIES.length;
+
+      item.put("field", "priority");
+      item.put("fieldtype", "jira");
+      item.put("from", String.valueOf(from + 1));
+      item.put("fromString", PRIORITIES[from]);
+      item.put("to", String.valueOf(to + 1));
+      item.put("toString", PRIORITIES[to]);
+    } else {
+      int from = historyIndex / 2 % STATUSES.length;
+      int to = (from + 1) % STATUSES.length;
+
+      item.put("field", "status");
+      item.put("fieldtype", "jira");
+      item.put("from", String.valueOf(from + 1));
+      item.put("fromString", STATUSES[from]);
+      item.put("to", String.valueOf(to + 1));
+      item.put("toString", STATUSES[to]);
+    }
+
+    Map<String, Object> history = new LinkedHashMap<>();
+    history.put("id", issueId + String.format("%03d", historyIndex));
+    history.put("author", getUser((issueIndex + historyIndex) % USERS));
+    history.put("created", formatDateTime(created + (historyIndex + 1) * MILLISECONDS_IN_A_DAY));
+    history.put("items", Collections.singletonList(item));
+    return history;
+  }
+
+  private Map<String, Object> getProject(int boardId) {
+    Map<String, Object> projectCategory = new LinkedHashMap<>();
+    projectCategory.put("id", "10000");
+    projectCategory.put("name", "Synthetic");
+    projectCategory.put("description", "Synthetic projects");
+
+    Map<String, Object> project = new LinkedHashMap<>();
+    project.put("id", getProjectId(boardId));
+    project.put("key", getProjectKey(boardId));
+    project.put("name", "Project " + boardId);
+    project.put("projectCategory", projectCategory);
+    return project;
+  }
+
+  private Map<String, Object> getVersionReference(int boardId, int index) {
+    Map<String, Object> version = getVersion(boardId, index);
+    version.remove("projectId");
+    return version;
+  }
+
+  private static Map<String, Object> getIssueType(int index) {
+    Map<String, Object> issueType = new LinkedHashMap<>();
+    issueType.put("id", String.valueOf(index + 1));
+    issueType.put("name", ISSUE_TYPES[index]);
+    issueType.put("description", ISSUE_TYPES[index]);
+    issueType.put("subtask", false);
+    return issueType;
+  }
+
+  private static Map<String, Object> getPriority(int index) {
+    Map<String, Object> priority = new LinkedHashMap<>();
+    priority.put("id", String.valueOf(index + 1));
+    priority.put("name", PRIORITIES[index]);
+    return priority;
+  }
+
+  private static Map<String, Object> getStatus(int index) {
+    Map<String, Object> statusCategory = new LinkedHashMap<>();
+    statusCategory.put("id", index < 2 ? 2 : 3);
+    statusCategory.put("key", index < 2 ? "new" : "done");
+    statusCategory.put("colorName", index < 2 ? "blue-gray" : "green");
+    statusCategory.put("name", index < 2 ? "To Do" : "Done");
+
+    Map<String, Object> status = new LinkedHashMap<>();
+    status.put("id", String.valueOf(index + 1));
+    status.put("name", STATUSES[index]);
+    status.put("description", STATUSES[index]);
+    status.put("statusCategory", statusCategory);
+    return status;
+  }
+
+  private static Map<String, Object> getResolution() {
+    Map<String, Object> resolution = new LinkedHashMap<>();
+    resolution.put("id", "1");
+    resolution.put("name", "Fixed");
+    resolution.put("description", "A fix for this issue is checked into the tree and tested.");
+    return resolution;
+  }
+
+  private static Map<String, Object> getUser(int index) {
+    Map<String, Object> user = new LinkedHashMap<>();
+    user.put("name", "user" + index);
+    user.put("key", "user" + index);
+    user.put("emailAddress", "user" + index + "@example.org");
+    user.put("displayName", "User " + index);
+    user.put("active", true);
+    user.put("timeZone", "Etc/UTC");
+    return user;
+  }
+
+  private static int getSprintId(int boardId, int index) {
+    return boardId * 1000 + index;
+  }
+
+  private static int getVersionId(int boardId, int index) {
+    return boardId * 1000 + index;
+  }
+
+  private static long getIssueId(int boardId, int index) {
+    return boardId * 1000000L + index;
+  }
+
+  private static String getProjectId(int boardId) {
+    return String.valueOf(10000 + boardId);
+  }
+
+  private static String getProjectKey(int boardId) {
+    return "PRJ" + boardId;
+  }
+
+  private static String formatDateTime(long milliseconds) {
+    return DATE_TIME_FORMAT.format(Instant.ofEpochMilli(milliseconds));
+  }
+
+  private static Map<String, String> getQueryParameters(URI requestUri) {
+    Map<String, String> parameters = new HashMap<>();
+    String query = requestUri.getQuery();
+    if (query == null) {
+      return parameters;
+    }
+
+    for (String parameter : query.split("&")) {
+      int separatorIndex = parameter.indexOf('=');
+      if (separatorIndex > 0) {
+        parameters.put(parameter.substring(0, separatorIndex),
+            parameter.substring(separatorIndex + 1));
+      }
+    }
+
+    return parameters;
+  }
+
+  private static int getIntParameter(Map<String, String> parameters, String name,
+      int defaultValue) {
+    String value = parameters.get(name);
+    try {
+      return value != null ? Integer.parseInt(value) : defaultValue;
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+}
@@ -0,0 +1,118 @@
+package crest.jira.data.miner.benchmark;
+
+import com.j256.ormlite.support.ConnectionSource;
+
+import crest.jira.data.miner.config.ConfigurationProvider;
+import crest.jira.data.miner.db.Durations;
+import crest.jira.data.miner.db.JiraIssueListDao;
+import crest.jira.data.miner.db.SqliteConnectionProfile;
+import crest.jira.data.miner.report.model.ExtendedIssue;
+import crest.jira.data.retriever.model.History;
+import crest.jira.data.retriever.model.Version;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+public class ReadPathBenchmark {
+
+  private static Logger logger = Logger.getLogger(ReadPathBenchmark.class.getName());
+
+  private static final int ITERATIONS = Integer.getInteger("jira.benchmark.iterations", 5);
+
+  /**
+   * Loads a board through the ORMLite DAOs and through the JDBC read path,
+   * verifies both produce the same issues and reports the average load time of
+   * each. Every path is loaded once before measuring, to warm up the page
+   * cache and the JIT.
+   *
+   * @param args
+   *          The board to load.
+   * @throws Exception
+   *           In case of SQL errors, or if the paths produce different issues.
+   */
+  public static void main(String... args) throws Exception {
+    if (args.length == 0) {
+      throw new IllegalArgumentException("Usage: ReadPathBenchmark <boardId>");
+    }
+
+    String boardId = args[0];
+    ConnectionSource connectionSource = SqliteConnectionProfile
+        .fromSystemProperties(SqliteConnectionProfile.ANALYSIS)
+        .createConnectionSource(new ConfigurationProvider().getConnectionSource());
+
+    try {
+      List<String> ormliteIssues = describe(load(connectionSource, boardId, false));
+      List<String> jdbcIssues = describe(load(connectionSource, boardId, true));
+
+      if (!ormliteIssues.equals(jdbcIssues)) {
+        throw new Exception("The read paths produce different issues for board " + boardId);
+      }
+      logger.info("Both read paths produce the same " + ormliteIssues.size() + " issues.");
+
+      double ormliteSeconds = measure(connectionSource, boardId, false);
+      double jdbcSeconds = measure(connectionSource, boardId, true);
+
+      logger.info("ORMLite read path: " + ormliteSeconds + " seconds per load.");
+      logger.info("JDBC read path: " + jdbcSeconds + " seconds per load (speed-up: "
+          + ormliteSeconds / jdbcSeconds + ").");
+    } finally {
+      connectionSource.close();
+    }
+  }
+
+  private static double measure(ConnectionSource connectionSource, String boardId,
+      boolean rawJdbcReads) throws SQLException {
+    long start = System.nanoTime();
+    for (int iteration = 0; iteration < ITERATIONS; iteration += 1) {
+      load(connectionSource, boardId, rawJdbcReads);
+    }
+
+    return Durations.toSeconds(System.nanoTime() - start) / ITERATIONS;
+  }
+
+  private static List<ExtendedIssue> load(ConnectionSource connectionSource, String boardId,
+      boolean rawJdbcReads) throws SQLException {
+    JiraIssueListDao issueListDao = new JiraIssueListDao(connectionSource);
+    issueListDao.setRawJdbcReads(rawJdbcReads);
+    issueListDao.loadBoardIssues(boardId, false);
+    return issueListDao.getIssueList();
+  }
+
+  /**
+   * Summarizes the attributes of every issue that depend on the read path.
+   */
+  private static List<String> describe(List<ExtendedIssue> issues) {
+    List<String> descriptions = new ArrayList<>();
+    for (ExtendedIssue extendedIssue : issues) {
+      StringBuilder description = new StringBuilder(extendedIssue.getIssue().getKey())
+          .append(" original=").append(extendedIssue.getOriginalPriority().getId())
+          .append(" changed=").append(extendedIssue.isDoesPriorityChanged())
+          .append(" releasesToFix=").append(extendedIssue.getReleasesToBeFixed())
+          .append(" closest=").append(extendedIssue.getClosestRelease().getId())
+          .append(" fixVersions=").append(describe(extendedIssue.getIssue().getFixVersions()))
+          .append(" versions=").append(describe(extendedIssue.getIssue().getVersions()))
+          .append(" histories=");
+
+      for (History history : extendedIssue.getIssue().getChangeLog().getValues()) {
+        description.append(history.getId()).append('@').append(history.getCreated())
+            .append('/').append(history.getItems().length).append(' ');
+      }
+      descriptions.add(description.toString());
+    }
+
+    return descriptions;
+  }
+
+  private static String describe(Version[] versions) {
+    StringBuilder description = new StringBuilder("[");
+    for (Version version : versions) {
+      description.append(version != null ? version.getId() + ":" + version.getName() + ":"
+          + version.getReleaseDate() : "null").append(' ');
+    }
+
+    return description.append(']').toString();
+  }
+
+}
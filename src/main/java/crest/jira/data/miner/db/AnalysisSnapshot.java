@@ -0,0 +1,584 @@
+package crest.jira.data.miner.db;
+
+import com.j256.ormlite.support.ConnectionSource;
+
+import crest.jira.data.miner.report.model.ExtendedIssue;
+import crest.jira.data.miner.report.model.VersionRankTable;
+import crest.jira.data.retriever.map.ResponseList;
+import crest.jira.data.retriever.model.History;
+import crest.jira.data.retriever.model.Issue;
+import crest.jira.data.retriever.model.IssueType;
+import crest.jira.data.retriever.model.Priority;
+import crest.jira.data.retriever.model.Project;
+import crest.jira.data.retriever.model.Resolution;
+import crest.jira.data.retriever.model.Status;
+import crest.jira.data.retriever.model.User;
+import crest.jira.data.retriever.model.Version;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class AnalysisSnapshot {
+
+  private static Logger logger = Logger.getLogger(AnalysisSnapshot.class.getName());
+
+  public static final String SNAPSHOT_DIRECTORY_PROPERTY = "jira.analysis.snapshotDir";
+
+  /**
+   * Issue fields the CSV export reads, and the only ones a snapshot stores,
+   * besides the attributes derived from the change log. The reporter keeps
+   * its identifier, key, name and display name, and the project its
+   * identifier and key. Summary, assignee, creator, components and the
+   * change log itself are not stored.
+   */
+  public static final Set<String> CSV_EXPORT_FIELDS = Collections
+      .unmodifiableSet(new HashSet<>(Arrays.asList("id", "key", "boardId", "project", "created",
+          "resolutiondate", "issuetype", "priority", "resolution", "status", "reporter",
+          "fixVersions", "versions")));
+
+  private static final String SQLITE_URL_PREFIX = "jdbc:sqlite:";
+  private static final String WAL_SUFFIX = "-wal";
+  private static final int MAGIC_NUMBER = 0x4a495241;
+  private static final int FORMAT_VERSION = 1;
+  private static final int NO_REFERENCE = -1;
+  private static final long NO_DATE = Long.MIN_VALUE;
+
+  private File snapshotDirectory;
+  private File databaseFile;
+
+  /**
+   * Stores the CSV export fields of loaded issues on binary files, so later
+   * loads do not need to query the database. Every snapshot is tied to a
+   * fingerprint of the database file, and it is ignored once the database
+   * changes.
+   *
+   * @param snapshotDirectory
+   *          Directory for the snapshot files.
+   * @param databaseUrl
+   *          JDBC URL of the SQLite database.
+   */
+  public AnalysisSnapshot(File snapshotDirectory, String databaseUrl) {
+    this.snapshotDirectory = snapshotDirectory;
+    this.databaseFile = getDatabaseFile(databaseUrl);
+  }
+
+  /**
+   * Produces a snapshot for a database, if a snapshot directory is defined in
+   * the jira.analysis.snapshotDir system property.
+   *
+   * @param connectionSource
+   *          Connection source of the database.
+   * @return The snapshot, or null if snapshots are not enabled.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public static AnalysisSnapshot fromSystemProperties(ConnectionSource connectionSource)
+      throws SQLException {
+    String snapshotDirectory = System.getProperty(SNAPSHOT_DIRECTORY_PROPERTY);
+    if (snapshotDirectory == null || snapshotDirectory.isEmpty()) {
+      return null;
+    }
+
+    return new AnalysisSnapshot(new File(snapshotDirectory),
+        SqliteConnectionProfile.resolveUrl(connectionSource));
+  }
+
+  private static File getDatabaseFile(String databaseUrl) {
+    if (databaseUrl == null || !databaseUrl.startsWith(SQLITE_URL_PREFIX)) {
+      return null;
+    }
+
+    String path = databaseUrl.substring(SQLITE_URL_PREFIX.length());
+    int parametersStart = path.indexOf('?');
+    if (parametersStart >= 0) {
+      path = path.substring(0, parametersStart);
+    }
+
+    File databaseFile = new File(path);
+    return databaseFile.isFile() ? databaseFile : null;
+  }
+
+  /**
+   * Identifies the current state of the database, through the size and
+   * modification time of its file and of its write-ahead log.
+   *
+   * @return The fingerprint, or null for databases that are not plain files.
+   */
+  public String getDatabaseFingerprint() {
+    if (databaseFile == null) {
+      return null;
+    }
+
+    File walFile = new File(databaseFile.getPath() + WAL_SUFFIX);
+    return databaseFile.getAbsolutePath() + ":" + databaseFile.length() + ":"
+        + databaseFile.lastModified() + ":" + walFile.length() + ":" + walFile.lastModified();
+  }
+
+  private File getSnapshotFile(String loadKey) {
+    return new File(snapshotDirectory,
+        "analysis-" + Integer.toHexString(loadKey.hashCode()) + ".snapshot");
+  }
+
+  /**
+   * Reads the issues of a load from its snapshot file, through a memory
+   * mapping.
+   *
+   * @param loadKey
+   *          Identifies the load parameters, like the board and the issue
+   *          types.
+   * @return The issues, or null if there is no snapshot for the load or the
+   *         database changed after writing it.
+   */
+  public List<ExtendedIssue> read(String loadKey) {
+    String fingerprint = getDatabaseFingerprint();
+    File snapshotFile = getSnapshotFile(loadKey);
+    if (fingerprint == null || !snapshotFile.isFile()) {
+      return null;
+    }
+
+    long start = System.nanoTime();
+    try (FileChannel channel = FileChannel.open(snapshotFile.toPath(),
+        StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+      if (buffer.remaining() < 8 || buffer.getInt() != MAGIC_NUMBER
+          || buffer.getInt() != FORMAT_VERSION
+          || !(fingerprint + "|" + loadKey).equals(readString(buffer))) {
+        logger.info("The snapshot " + snapshotFile + " is stale. Loading from the database.");
+        return null;
+      }
+
+      List<ExtendedIssue> issues = new SnapshotReader(buffer).readIssues();
+      logger.info(issues.size() + " issues read from the snapshot " + snapshotFile + " in "
+          + Durations.toSeconds(System.nanoTime() - start) + " seconds.");
+      return issues;
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING, "The snapshot " + snapshotFile + " cannot be read.", e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes the issues of a load to its snapshot file. The file is replaced
+   * only once it is complete.
+   *
+   * @param loadKey
+   *          Identifies the load parameters, like the board and the issue
+   *          types.
+   * @param issues
+   *          Issues, with all information loaded. Only the CSV export fields
+   *          are written.
+   * @param versionRepository
+   *          Repository that provided the project versions of the issues.
+   * @throws IOException
+   *           If the snapshot cannot be written.
+   * @throws SQLException
+   *           In case of SQL errors while obtaining project versions.
+   */
+  public void write(String loadKey, List<ExtendedIssue> issues,
+      VersionRepository versionRepository) throws IOException, SQLException {
+    String fingerprint = getDatabaseFingerprint();
+    if (fingerprint == null) {
+      logger.fine("The database is not a plain file. No snapshot is written.");
+      return;
+    }
+
+    if (!snapshotDirectory.isDirectory() && !snapshotDirectory.mkdirs()) {
+      throw new IOException("Cannot create the snapshot directory " + snapshotDirectory);
+    }
+
+    File snapshotFile = getSnapshotFile(loadKey);
+    File temporaryFile = new File(snapshotDirectory, snapshotFile.getName() + ".tmp");
+
+    long start = System.nanoTime();
+    try (DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+      output.writeInt(MAGIC_NUMBER);
+      output.writeInt(FORMAT_VERSION);
+      writeString(output, fingerprint + "|" + loadKey);
+
+      new SnapshotWriter(output).writeIssues(issues, versionRepository);
+    }
+
+    Files.move(temporaryFile.toPath(), snapshotFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+    logger.info(issues.size() + " issues written to the snapshot " + snapshotFile + " ("
+        + snapshotFile.length() + " bytes) in "
+        + Durations.toSeconds(System.nanoTime() - start) + " seconds.");
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    if (value == null) {
+      output.writeInt(NO_REFERENCE);
+      return;
+    }
+
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length == NO_REFERENCE) {
+      return null;
+    }
+
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeDate(DataOutputStream output, Date date) throws IOException {
+    output.writeLong(date != null ? date.getTime() : NO_DATE);
+  }
+
+  private static Date readDate(ByteBuffer buffer) {
+    long time = buffer.getLong();
+    return time != NO_DATE ? new Date(time) : null;
+  }
+
+  /**
+   * Writes a shared table of users and versions first, so every issue refers
+   * to them by position.
+   */
+  private static class SnapshotWriter {
+
+    private DataOutputStream output;
+    private Map<User, Integer> userPositions = new IdentityHashMap<>();
+    private Map<Version, Integer> versionPositions = new IdentityHashMap<>();
+
+    public SnapshotWriter(DataOutputStream output) {
+      this.output = output;
+    }
+
+    public void writeIssues(List<ExtendedIssue> issues, VersionRepository versionRepository)
+        throws IOException, SQLException {
+      List<User> users = new ArrayList<>();
+      List<Version> versions = new ArrayList<>();
+      Map<String, List<Version>> versionsPerProject = new LinkedHashMap<>();
+
+      for (ExtendedIssue extendedIssue : issues) {
+        Issue issue = extendedIssue.getIssue();
+        User reporter = issue.getReporter();
+        if (reporter != null && !userPositions.containsKey(reporter)) {
+          userPositions.put(reporter, users.size());
+          users.add(reporter);
+        }
+
+        String projectId = issue.getProject().getId();
+        if (!versionsPerProject.containsKey(projectId)) {
+          versionsPerProject.put(projectId, versionRepository.getProjectVersions(projectId));
+          registerVersions(versionsPerProject.get(projectId), versions);
+        }
+        registerVersions(issue.getFixVersions(), versions);
+        registerVersions(issue.getVersions(), versions);
+      }
+
+      output.writeInt(users.size());
+      for (User user : users) {
+        writeString(output, user.getId());
+        writeString(output, user.getKey());
+        writeString(output, user.getName());
+        writeString(output, user.getDisplayName());
+      }
+
+      output.writeInt(versions.size());
+      for (Version version : versions) {
+        writeString(output, version.getId());
+        writeString(output, version.getName());
+        writeDate(output, version.getReleaseDate());
+        writeString(output, version.getProjectId());
+      }
+
+      output.writeInt(versionsPerProject.size());
+      for (Map.Entry<String, List<Version>> projectVersions : versionsPerProject.entrySet()) {
+        writeString(output, projectVersions.getKey());
+        writeVersionReferences(projectVersions.getValue());
+      }
+
+      output.writeInt(issues.size());
+      for (ExtendedIssue extendedIssue : issues) {
+        writeIssue(extendedIssue);
+      }
+    }
+
+    private void registerVersions(List<Version> candidates, List<Version> versions) {
+      for (Version version : candidates) {
+        if (version != null && !versionPositions.containsKey(version)) {
+          versionPositions.put(version, versions.size());
+          versions.add(version);
+        }
+      }
+    }
+
+    private void registerVersions(Version[] candidates, List<Version> versions) {
+      if (candidates != null) {
+        registerVersions(Arrays.asList(candidates), versions);
+      }
+    }
+
+    private void writeVersionReferences(List<Version> versions) throws IOException {
+      output.writeInt(versions.size());
+      for (Version version : versions) {
+        output.writeInt(version != null ? versionPositions.get(version) : NO_REFERENCE);
+      }
+    }
+
+    private void writeCatalogEntry(boolean isPresent, String id, String name)
+        throws IOException {
+      output.writeBoolean(isPresent);
+      if (isPresent) {
+        writeString(output, id);
+        writeString(output, name);
+      }
+    }
+
+    private void writeIssue(ExtendedIssue extendedIssue) throws IOException {
+      Issue issue = extendedIssue.getIssue();
+
+      writeString(output, issue.getId());
+      writeString(output, issue.getKey());
+      writeString(output, issue.getBoardId());
+      writeString(output, issue.getProject().getId());
+      writeString(output, issue.getProject().getKey());
+      writeDate(output, issue.getCreated());
+      writeDate(output, issue.getResolutiondate());
+
+      IssueType issueType = issue.getIssueType();
+      writeCatalogEntry(issueType != null, issueType != null ? issueType.getId() : null,
+          issueType != null ? issueType.getName() : null);
+      Priority priority = issue.getPriority();
+      writeCatalogEntry(priority != null, priority != null ? priority.getId() : null,
+          priority != null ? priority.getName() : null);
+      Resolution resolution = issue.getResolution();
+      writeCatalogEntry(resolution != null, resolution != null ? resolution.getId() : null,
+          resolution != null ? resolution.getName() : null);
+      Status status = issue.getStatus();
+      writeCatalogEntry(status != null, status != null ? status.getId() : null,
+          status != null ? status.getName() : null);
+
+      User reporter = issue.getReporter();
+      output.writeInt(reporter != null ? userPositions.get(reporter) : NO_REFERENCE);
+      writeVersionReferences(Arrays.asList(issue.getFixVersions()));
+      writeVersionReferences(Arrays.asList(issue.getVersions()));
+
+      writeString(output, extendedIssue.getOriginalPriority().getId());
+      writeString(output, extendedIssue.getOriginalPriority().getName());
+      output.writeBoolean(extendedIssue.isDoesPriorityChanged());
+      output.writeDouble(extendedIssue.getResolutionTime());
+      output.writeBoolean(extendedIssue.isResolved());
+      output.writeBoolean(extendedIssue.isAcceptedByDevTeam());
+    }
+  }
+
+  /**
+   * Rebuilds the issues of a snapshot. Catalog entries like priorities and
+   * statuses are shared by all the issues that refer to them.
+   */
+  private static class SnapshotReader {
+
+    private ByteBuffer buffer;
+    private User[] users;
+    private Version[] versions;
+    private Map<String, VersionRankTable> rankTablesPerProject = new HashMap<>();
+
+    private Map<String, Project> projects = new HashMap<>();
+    private Map<String, IssueType> issueTypes = new HashMap<>();
+    private Map<String, Priority> priorities = new HashMap<>();
+    private Map<String, Resolution> resolutions = new HashMap<>();
+    private Map<String, Status> statuses = new HashMap<>();
+
+    public SnapshotReader(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    public List<ExtendedIssue> readIssues() {
+      users = new User[buffer.getInt()];
+      for (int index = 0; index < users.length; index += 1) {
+        User user = new User();
+        user.setId(readString(buffer));
+        user.setKey(readString(buffer));
+        user.setName(readString(buffer));
+        user.setDisplayName(readString(buffer));
+        users[index] = user;
+      }
+
+      versions = new Version[buffer.getInt()];
+      for (int index = 0; index < versions.length; index += 1) {
+        String id = readString(buffer);
+        String name = readString(buffer);
+        Version version = new Version(id, name, readDate(buffer));
+        version.setProjectId(readString(buffer));
+        versions[index] = version;
+      }
+
+      int projectCount = buffer.getInt();
+      for (int index = 0; index < projectCount; index += 1) {
+        String projectId = readString(buffer);
+        rankTablesPerProject.put(projectId, new VersionRankTable(readVersionReferences()));
+      }
+
+      int issueCount = buffer.getInt();
+      List<ExtendedIssue> issues = new ArrayList<>(issueCount);
+      for (int index = 0; index < issueCount; index += 1) {
+        issues.add(readIssue());
+      }
+
+      return issues;
+    }
+
+    private List<Version> readVersionReferences() {
+      int count = buffer.getInt();
+      List<Version> references = new ArrayList<>(count);
+      for (int index = 0; index < count; index += 1) {
+        int position = buffer.getInt();
+        references.add(position != NO_REFERENCE ? versions[position] : null);
+      }
+
+      return references;
+    }
+
+    private ExtendedIssue readIssue() {
+      Issue issue = new Issue();
+      issue.setId(readString(buffer));
+      issue.setKey(readString(buffer));
+      issue.setBoardId(readString(buffer));
+      issue.setProject(readProject(readString(buffer), readString(buffer)));
+      issue.setCreated(readDate(buffer));
+      issue.setResolutiondate(readDate(buffer));
+
+      issue.setIssueType(buffer.get() != 0 ? readIssueType() : null);
+      issue.setPriority(buffer.get() != 0 ? readPriority() : null);
+      issue.setResolution(buffer.get() != 0 ? readResolution() : null);
+      issue.setStatus(buffer.get() != 0 ? readStatus() : null);
+
+      int reporterPosition = buffer.getInt();
+      issue.setReporter(reporterPosition != NO_REFERENCE ? users[reporterPosition] : null);
+      List<Version> fixVersions = readVersionReferences();
+      issue.setFixVersions(fixVersions.toArray(new Version[fixVersions.size()]));
+      List<Version> affectedVersions = readVersionReferences();
+      issue.setVersions(affectedVersions.toArray(new Version[affectedVersions.size()]));
+
+      // The change log is not stored: The fields derived from it are.
+      issue.setChangeLog(new ResponseList<History>());
+      issue.getChangeLog().setValues(new History[0]);
+
+      String originalPriorityId = readString(buffer);
+      String originalPriorityName = readString(buffer);
+      Priority originalPriority = new Priority();
+      originalPriority.setId(originalPriorityId);
+      originalPriority.setName(originalPriorityName);
+      if (ExtendedIssue.NO_PRIORITY.getId().equals(originalPriorityId)) {
+        originalPriority = ExtendedIssue.NO_PRIORITY;
+      }
+
+      boolean doesPriorityChanged = buffer.get() != 0;
+      double resolutionTime = buffer.getDouble();
+      boolean isResolved = buffer.get() != 0;
+      boolean isAcceptedByDevTeam = buffer.get() != 0;
+
+      ExtendedIssue extendedIssue = new ExtendedIssue(issue, originalPriority,
+          doesPriorityChanged, resolutionTime, isResolved, isAcceptedByDevTeam);
+      extendedIssue.setVersionRankTable(rankTablesPerProject.get(issue.getProject().getId()));
+      return extendedIssue;
+    }
+
+    private Project readProject(String id, String key) {
+      Project project = projects.get(id);
+      if (project == null) {
+        project = new Project();
+        project.setId(id);
+        project.setKey(key);
+        projects.put(id, project);
+      }
+
+      return project;
+    }
+
+    private IssueType readIssueType() {
+      String id = readString(buffer);
+      String name = readString(buffer);
+
+      IssueType issueType = issueTypes.get(id);
+      if (issueType == null) {
+        issueType = new IssueType();
+        issueType.setId(id);
+        issueType.setName(name);
+        issueTypes.put(id, issueType);
+      }
+
+      return issueType;
+    }
+
+    private Priority readPriority() {
+      String id = readString(buffer);
+      String name = readString(buffer);
+
+      Priority priority = priorities.get(id);
+      if (priority == null) {
+        priority = new Priority();
+        priority.setId(id);
+        priority.setName(name);
+        priorities.put(id, priority);
+      }
+
+      return priority;
+    }
+
+    private Resolution readResolution() {
+      String id = readString(buffer);
+      String name = readString(buffer);
+
+      Resolution resolution = resolutions.get(id);
+      if (resolution == null) {
+        resolution = new Resolution();
+        resolution.setId(id);
+        resolution.setName(name);
+        resolutions.put(id, resolution);
+      }
+
+      return resolution;
+    }
+
+    private Status readStatus() {
+      String id = readString(buffer);
+      String name = readString(buffer);
+
+      Status status = statuses.get(id);
+      if (status == null) {
+        status = new Status();
+        status.setId(id);
+        status.setName(name);
+        statuses.put(id, status);
+      }
+
+      return status;
+    }
+  }
+
+}
@@ -0,0 +1,204 @@
+package crest.jira.data.miner.db;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.TableInfo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+
+public class BatchedEntityWriter {
+
+  private static Logger logger = Logger.getLogger(BatchedEntityWriter.class.getName());
+
+  private ConnectionSource connectionSource;
+  private int batchSize;
+
+  private Map<Class<?>, List<Object>> pendingEntities = new LinkedHashMap<>();
+  private int pendingRows = 0;
+
+  private Map<String, long[]> statisticsPerEntity = new LinkedHashMap<>();
+
+  /**
+   * Accumulates entities and writes them using a single transaction per batch,
+   * instead of an implicit transaction per row. Each entity table is written
+   * through one prepared INSERT OR REPLACE statement and JDBC batches, so rows
+   * need no previous lookup of their identifier.
+   *
+   * @param connectionSource
+   *          Connection source.
+   * @param batchSize
+   *          Maximum number of rows written in a single transaction.
+   */
+  public BatchedEntityWriter(ConnectionSource connectionSource, int batchSize) {
+    this.connectionSource = connectionSource;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Schedules a list of entities for writing. Null entries are ignored. If the
+   * pending rows reach the batch size, they are flushed immediately.
+   *
+   * @param entities
+   *          Entities to create or update.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public synchronized <T> void addToBatch(List<T> entities) throws SQLException {
+    for (T entity : entities) {
+      if (entity == null) {
+        continue;
+      }
+
+      List<Object> entitiesPerClass = pendingEntities.get(entity.getClass());
+      if (entitiesPerClass == null) {
+        entitiesPerClass = new ArrayList<>();
+        pendingEntities.put(entity.getClass(), entitiesPerClass);
+      }
+
+      entitiesPerClass.add(entity);
+      pendingRows += 1;
+
+      if (pendingRows >= batchSize) {
+        flush();
+      }
+    }
+  }
+
+  /**
+   * Writes all the pending entities in one transaction.
+   *
+   * @throws SQLException
+   *           In case of SQL errors. The whole batch is rolled back.
+   */
+  public synchronized void flush() throws SQLException {
+    if (pendingRows == 0) {
+      return;
+    }
+
+    final Map<Class<?>, List<Object>> batch = pendingEntities;
+    pendingEntities = new LinkedHashMap<>();
+    pendingRows = 0;
+
+    TransactionManager.callInTransaction(connectionSource, new Callable<Void>() {
+
+      public Void call() throws Exception {
+        // The transaction saves its connection, so this is the same one.
+        DatabaseConnection databaseConnection = connectionSource.getReadWriteConnection();
+        try {
+          Connection connection = SqliteConnectionProfile.getJdbcConnection(databaseConnection);
+          for (Map.Entry<Class<?>, List<Object>> entry : batch.entrySet()) {
+            writeEntities(connection, entry.getKey(), entry.getValue());
+          }
+        } finally {
+          connectionSource.releaseConnection(databaseConnection);
+        }
+        return null;
+      }
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> void writeEntities(Connection connection, Class<T> entityClass,
+      List<Object> entities) throws SQLException {
+    Dao<T, ?> dao = DaoManager.createDao(connectionSource, entityClass);
+    TableInfo<T, ?> tableInfo = ((BaseDaoImpl<T, ?>) dao).getTableInfo();
+
+    long start = System.nanoTime();
+    if (tableInfo.getIdField() == null || tableInfo.getIdField().isGeneratedId()) {
+      // Identifiers assigned by the database cannot be replaced by value.
+      for (Object entity : entities) {
+        dao.createOrUpdate((T) entity);
+      }
+    } else {
+      List<FieldType> columns = getColumns(tableInfo);
+      try (PreparedStatement statement = connection
+          .prepareStatement(getInsertOrReplace(tableInfo.getTableName(), columns))) {
+        int rowsInBatch = 0;
+        for (Object entity : entities) {
+          for (int index = 0; index < columns.size(); index += 1) {
+            statement.setObject(index + 1,
+                columns.get(index).extractJavaFieldToSqlArgValue(entity));
+          }
+          statement.addBatch();
+
+          rowsInBatch += 1;
+          if (rowsInBatch == batchSize) {
+            statement.executeBatch();
+            rowsInBatch = 0;
+          }
+        }
+
+        if (rowsInBatch > 0) {
+          statement.executeBatch();
+        }
+      }
+    }
+
+    registerStatistics(entityClass.getSimpleName(), entities.size(), System.nanoTime() - start);
+  }
+
+  private static List<FieldType> getColumns(TableInfo<?, ?> tableInfo) {
+    List<FieldType> columns = new ArrayList<>();
+    for (FieldType fieldType : tableInfo.getFieldTypes()) {
+      if (!fieldType.isForeignCollection()) {
+        columns.add(fieldType);
+      }
+    }
+
+    return columns;
+  }
+
+  private static String getInsertOrReplace(String tableName, List<FieldType> columns) {
+    StringBuilder columnNames = new StringBuilder();
+    StringBuilder placeholders = new StringBuilder();
+    for (FieldType column : columns) {
+      if (columnNames.length() > 0) {
+        columnNames.append(", ");
+        placeholders.append(", ");
+      }
+      columnNames.append('"').append(column.getColumnName()).append('"');
+      placeholders.append('?');
+    }
+
+    return "INSERT OR REPLACE INTO \"" + tableName + "\" (" + columnNames + ") VALUES ("
+        + placeholders + ")";
+  }
+
+  private void registerStatistics(String entityName, long rows, long nanoseconds) {
+    long[] statistics = statisticsPerEntity.get(entityName);
+    if (statistics == null) {
+      statistics = new long[2];
+      statisticsPerEntity.put(entityName, statistics);
+    }
+
+    statistics[0] += rows;
+    statistics[1] += nanoseconds;
+  }
+
+  /**
+   * Logs the number of rows written and the throughput for every entity type.
+   */
+  public synchronized void logStatistics() {
+    for (Map.Entry<String, long[]> entry : statisticsPerEntity.entrySet()) {
+      long rows = entry.getValue()[0];
+      double seconds = Durations.toSeconds(entry.getValue()[1]);
+
+      logger.info(entry.getKey() + ": " + rows + " rows written in " + seconds + " seconds ("
+          + (seconds > 0 ? rows / seconds : rows) + " rows/sec)");
+    }
+  }
+
+}
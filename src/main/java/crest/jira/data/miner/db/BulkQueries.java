@@ -0,0 +1,88 @@
+package crest.jira.data.miner.db;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.Where;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+public class BulkQueries {
+
+  /**
+   * SQLite allows at most 999 host parameters per statement.
+   */
+  public static final int MAX_QUERY_ARGUMENTS = 500;
+
+  /**
+   * Obtains the rows whose column value is in a collection, using as many
+   * IN (...) queries as needed. Repeated values are queried once.
+   * 
+   * @param dao
+   *          DAO of the entity to query.
+   * @param columnName
+   *          Column to filter.
+   * @param values
+   *          Values of the column.
+   * @return Matching rows, in the order the database returns them.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public static <T, I> List<T> queryForIn(Dao<T, I> dao, String columnName,
+      Collection<?> values) throws SQLException {
+    return queryForIn(dao, columnName, values, null);
+  }
+
+  /**
+   * Obtains the rows whose column value is in a collection, and that satisfy an
+   * additional restriction.
+   * 
+   * @param dao
+   *          DAO of the entity to query.
+   * @param columnName
+   *          Column to filter.
+   * @param values
+   *          Values of the column.
+   * @param restriction
+   *          Additional conditions, combined using AND. It can be null.
+   * @return Matching rows, in the order the database returns them.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public static <T, I> List<T> queryForIn(Dao<T, I> dao, String columnName,
+      Collection<?> values, Restriction<T, I> restriction) throws SQLException {
+    List<Object> distinctValues = new ArrayList<Object>(new LinkedHashSet<Object>(values));
+    List<T> results = new ArrayList<>();
+
+    for (int start = 0; start < distinctValues.size(); start += MAX_QUERY_ARGUMENTS) {
+      List<Object> valuesInChunk = distinctValues.subList(start,
+          Math.min(start + MAX_QUERY_ARGUMENTS, distinctValues.size()));
+
+      QueryBuilder<T, I> queryBuilder = dao.queryBuilder();
+      Where<T, I> whereClause = queryBuilder.where().in(columnName, valuesInChunk);
+      if (restriction != null) {
+        restriction.restrict(whereClause.and());
+      }
+      results.addAll(dao.query(queryBuilder.prepare()));
+    }
+
+    return results;
+  }
+
+  public interface Restriction<T, I> {
+
+    /**
+     * Adds conditions to a where clause.
+     * 
+     * @param whereClause
+     *          Where clause, ready for the next condition.
+     * @throws SQLException
+     *           In case of SQL errors.
+     */
+    void restrict(Where<T, I> whereClause) throws SQLException;
+  }
+
+}
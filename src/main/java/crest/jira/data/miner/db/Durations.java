@@ -0,0 +1,22 @@
+package crest.jira.data.miner.db;
+
+public final class Durations {
+
+  private static final double NANOSECONDS_IN_A_SECOND = 1000000000.0;
+
+  private Durations() {
+  }
+
+  /**
+   * Converts a duration measured with System.nanoTime() to seconds, for the
+   * timing logs.
+   *
+   * @param nanoseconds
+   *          Duration in nanoseconds.
+   * @return Duration in seconds.
+   */
+  public static double toSeconds(long nanoseconds) {
+    return nanoseconds / NANOSECONDS_IN_A_SECOND;
+  }
+
+}
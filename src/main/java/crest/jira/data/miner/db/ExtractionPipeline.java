@@ -0,0 +1,190 @@
+package crest.jira.data.miner.db;
+
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class ExtractionPipeline {
+
+  private static Logger logger = Logger.getLogger(ExtractionPipeline.class.getName());
+
+  public static final String FETCH_STAGE = "fetch";
+  public static final String TRANSFORM_STAGE = "transform";
+  public static final String WRITE_STAGE = "write";
+
+  private static final WriteTask END_OF_WORK = new WriteTask() {
+
+    public void write() {
+    }
+  };
+
+  public interface WriteTask {
+
+    /**
+     * Writes information to the database. It is always invoked from the writer
+     * thread.
+     *
+     * @throws Exception
+     *           In case of errors while writing.
+     */
+    void write() throws Exception;
+  }
+
+  private BlockingQueue<WriteTask> writeQueue;
+  private Thread writerThread;
+  private volatile Exception writeFailure;
+
+  private Map<String, AtomicLong> nanosecondsPerStage = new ConcurrentHashMap<>();
+  private AtomicLong producerStallNanoseconds = new AtomicLong();
+  private AtomicLong writerStallNanoseconds = new AtomicLong();
+  private AtomicLong tasksSubmitted = new AtomicLong();
+  private AtomicLong accumulatedQueueDepth = new AtomicLong();
+  private volatile int maximumQueueDepth = 0;
+
+  /**
+   * Hands off database writes from the retrieval threads to a single writer
+   * thread. The queue is bounded, so producers block when the writer falls
+   * behind.
+   *
+   * @param queueCapacity
+   *          Maximum number of pending write tasks.
+   */
+  public ExtractionPipeline(int queueCapacity) {
+    this.writeQueue = new ArrayBlockingQueue<>(queueCapacity);
+  }
+
+  /**
+   * Starts the writer thread.
+   */
+  public void start() {
+    writerThread = new Thread(new Runnable() {
+
+      public void run() {
+        drainQueue();
+      }
+    }, "jira-extraction-writer");
+    writerThread.start();
+  }
+
+  private void drainQueue() {
+    while (true) {
+      WriteTask writeTask;
+      long waitStart = System.nanoTime();
+
+      try {
+        writeTask = writeQueue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+
+      writerStallNanoseconds.addAndGet(System.nanoTime() - waitStart);
+      if (writeTask == END_OF_WORK) {
+        return;
+      }
+
+      if (writeFailure != null) {
+        // Keep draining, so producers are not blocked forever.
+        continue;
+      }
+
+      long writeStart = System.nanoTime();
+      try {
+        writeTask.write();
+      } catch (Exception e) {
+        logger.log(Level.SEVERE, "Write task failed. Pending tasks will be discarded.", e);
+        writeFailure = e;
+      }
+      recordStage(WRITE_STAGE, System.nanoTime() - writeStart);
+    }
+  }
+
+  /**
+   * Queues a write task, blocking while the queue is full.
+   *
+   * @param writeTask
+   *          Task to be executed by the writer thread.
+   * @throws Exception
+   *           If a previous write failed, or if interrupted while waiting.
+   */
+  public void submit(WriteTask writeTask) throws Exception {
+    checkWriteFailure();
+
+    int queueDepth = writeQueue.size();
+    accumulatedQueueDepth.addAndGet(queueDepth);
+    tasksSubmitted.incrementAndGet();
+    if (queueDepth > maximumQueueDepth) {
+      maximumQueueDepth = queueDepth;
+    }
+
+    long waitStart = System.nanoTime();
+    writeQueue.put(writeTask);
+    producerStallNanoseconds.addAndGet(System.nanoTime() - waitStart);
+  }
+
+  /**
+   * Waits until all the queued tasks are written, and stops the writer thread.
+   *
+   * @throws Exception
+   *           The first error produced while writing, if any.
+   */
+  public void finish() throws Exception {
+    writeQueue.put(END_OF_WORK);
+    writerThread.join();
+    checkWriteFailure();
+  }
+
+  private void checkWriteFailure() throws Exception {
+    if (writeFailure != null) {
+      throw new Exception("A previous database write failed", writeFailure);
+    }
+  }
+
+  /**
+   * Accumulates the time spent on an extraction stage.
+   *
+   * @param stage
+   *          Stage name.
+   * @param nanoseconds
+   *          Time spent.
+   */
+  public void recordStage(String stage, long nanoseconds) {
+    AtomicLong counter = nanosecondsPerStage.get(stage);
+    if (counter == null) {
+      nanosecondsPerStage.putIfAbsent(stage, new AtomicLong());
+      counter = nanosecondsPerStage.get(stage);
+    }
+
+    counter.addAndGet(nanoseconds);
+  }
+
+  public double getStageSeconds(String stage) {
+    AtomicLong counter = nanosecondsPerStage.get(stage);
+    return counter != null ? Durations.toSeconds(counter.get()) : 0.0;
+  }
+
+  /**
+   * Logs the time per stage, the queue depth and the stalls of both ends of the
+   * queue.
+   */
+  public void logStatistics() {
+    for (String stage : nanosecondsPerStage.keySet()) {
+      logger.info("Stage " + stage + ": " + getStageSeconds(stage) + " seconds");
+    }
+
+    long submitted = tasksSubmitted.get();
+    logger.info("Write tasks submitted: " + submitted + ". Queue depth average: "
+        + (submitted > 0 ? accumulatedQueueDepth.get() / (double) submitted : 0)
+        + ", maximum: " + maximumQueueDepth);
+    logger.info("Producers stalled on a full queue for "
+        + Durations.toSeconds(producerStallNanoseconds.get())
+        + " seconds. Writer stalled on an empty queue for "
+        + Durations.toSeconds(writerStallNanoseconds.get()) + " seconds.");
+  }
+
+}
@@ -0,0 +1,144 @@
+package crest.jira.data.miner.db;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+
+import crest.jira.data.miner.db.model.FieldCatalog;
+import crest.jira.data.retriever.model.Field;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class FieldCatalogCache {
+
+  private static Logger logger = Logger.getLogger(FieldCatalogCache.class.getName());
+
+  private static final String CATALOG_ID = "fields";
+
+  private Dao<FieldCatalog, String> catalogDao;
+  private long timeToLive;
+  private ObjectMapper objectMapper = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  private volatile Field[] fields;
+  private volatile Field[] refreshedFields;
+  private Thread refreshThread;
+
+  /**
+   * Keeps the field catalog of the JIRA instance in the database, so it is not
+   * requested from the server on every start.
+   * 
+   * @param connectionSource
+   *          Connection source.
+   * @param timeToLive
+   *          Milliseconds after which the stored catalog is refreshed.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public FieldCatalogCache(ConnectionSource connectionSource, long timeToLive)
+      throws SQLException {
+    this.timeToLive = timeToLive;
+
+    TableUtils.createTableIfNotExists(connectionSource, FieldCatalog.class);
+    catalogDao = DaoManager.createDao(connectionSource, FieldCatalog.class);
+  }
+
+  /**
+   * Obtains the field catalog. It is loaded once: From the database if
+   * available, and from the server otherwise. A stored catalog older than the
+   * time to live is still returned, but a fresh one is requested in the
+   * background.
+   * 
+   * @param fieldSource
+   *          Retrieves the fields from the server.
+   * @return The field catalog.
+   * @throws Exception
+   *           If the catalog is not stored and cannot be retrieved.
+   */
+  public synchronized Field[] getFields(Callable<Field[]> fieldSource) throws Exception {
+    if (fields != null) {
+      return fields;
+    }
+
+    FieldCatalog catalog = catalogDao.queryForId(CATALOG_ID);
+    if (catalog != null) {
+      try {
+        fields = objectMapper.readValue(catalog.getContent(), Field[].class);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "The stored field catalog cannot be read.", e);
+      }
+    }
+
+    if (fields == null) {
+      logger.info("No field catalog stored. Retrieving it from the server ...");
+      fields = fieldSource.call();
+      store(fields);
+      return fields;
+    }
+
+    long age = System.currentTimeMillis() - catalog.getRetrieved().getTime();
+    logger.info("Using the field catalog retrieved on " + catalog.getRetrieved() + ": "
+        + fields.length + " fields.");
+    if (age > timeToLive) {
+      startRefresh(fieldSource);
+    }
+
+    return fields;
+  }
+
+  private void startRefresh(final Callable<Field[]> fieldSource) {
+    logger.info("The field catalog has expired. Refreshing it in the background.");
+
+    refreshThread = new Thread(new Runnable() {
+
+      public void run() {
+        try {
+          refreshedFields = fieldSource.call();
+        } catch (Exception e) {
+          logger.log(Level.WARNING, "Field catalog refresh failed. The stored one will be kept.",
+              e);
+        }
+      }
+    }, "jira-field-catalog-refresh");
+    refreshThread.setDaemon(true);
+    refreshThread.start();
+  }
+
+  /**
+   * Waits for the background refresh, if any, and stores its result. The
+   * database write happens on the calling thread, so it is never concurrent
+   * with the extraction writes.
+   * 
+   * @throws Exception
+   *           In case of SQL errors, or if interrupted while waiting.
+   */
+  public synchronized void storeRefreshedFields() throws Exception {
+    if (refreshThread == null) {
+      return;
+    }
+
+    refreshThread.join();
+    refreshThread = null;
+
+    if (refreshedFields != null) {
+      fields = refreshedFields;
+      refreshedFields = null;
+      store(fields);
+    }
+  }
+
+  private void store(Field[] fields) throws SQLException, IOException {
+    catalogDao.createOrUpdate(
+        new FieldCatalog(CATALOG_ID, objectMapper.writeValueAsString(fields), new Date()));
+    logger.info("Field catalog stored: " + fields.length + " fields.");
+  }
+
+}
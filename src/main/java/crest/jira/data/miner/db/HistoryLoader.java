@@ -0,0 +1,143 @@
+package crest.jira.data.miner.db;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.Where;
+
+import crest.jira.data.retriever.map.ResponseList;
+import crest.jira.data.retriever.model.ChangeLogItem;
+import crest.jira.data.retriever.model.History;
+import crest.jira.data.retriever.model.Issue;
+
+import org.apache.commons.collections4.ListValuedMap;
+import org.apache.commons.collections4.MultiMapUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+public class HistoryLoader {
+
+  private static Logger logger = Logger.getLogger(HistoryLoader.class.getName());
+
+  private Dao<History, String> historyDao;
+  private Dao<ChangeLogItem, String> changeLogItemDao;
+  private List<String> changeLogFields;
+  private JdbcReadPath readPath;
+
+  /**
+   * Loads the change log of a set of issues with a few chunked queries,
+   * instead of one query per issue and per history.
+   * 
+   * @param historyDao
+   *          History DAO.
+   * @param changeLogItemDao
+   *          Change log item DAO.
+   */
+  public HistoryLoader(Dao<History, String> historyDao,
+      Dao<ChangeLogItem, String> changeLogItemDao) {
+    this.historyDao = historyDao;
+    this.changeLogItemDao = changeLogItemDao;
+  }
+
+  /**
+   * Restricts the change log to the items of some fields, and to the histories
+   * that contain them. The filter is applied in the database.
+   * 
+   * @param changeLogFields
+   *          Fields to load, like "priority". If empty, all of them are loaded.
+   */
+  public void setChangeLogFields(String... changeLogFields) {
+    if (changeLogFields == null || changeLogFields.length == 0) {
+      this.changeLogFields = null;
+    } else {
+      this.changeLogFields = Arrays.asList(changeLogFields);
+    }
+  }
+
+  /**
+   * Reads histories and items through hand-written statements instead of the
+   * DAOs.
+   * 
+   * @param readPath
+   *          JDBC read path. If null, the DAOs are used.
+   */
+  public void setReadPath(JdbcReadPath readPath) {
+    this.readPath = readPath;
+  }
+
+  /**
+   * Sets the change log of every issue. Histories and items keep the order in
+   * which the database returns them, as when querying them one issue at a
+   * time.
+   * 
+   * @param issues
+   *          Issues to complete.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public void loadChangeLogs(List<Issue> issues) throws SQLException {
+    List<String> issueIds = new ArrayList<>();
+    for (Issue issue : issues) {
+      issueIds.add(issue.getId());
+    }
+
+    BulkQueries.Restriction<History, String> historyRestriction = null;
+    BulkQueries.Restriction<ChangeLogItem, String> itemRestriction = null;
+
+    if (changeLogFields != null) {
+      final QueryBuilder<ChangeLogItem, String> matchingHistories = changeLogItemDao
+          .queryBuilder();
+      matchingHistories.selectColumns("historyId").where().in("field", changeLogFields);
+
+      historyRestriction = new BulkQueries.Restriction<History, String>() {
+
+        public void restrict(Where<History, String> whereClause) throws SQLException {
+          whereClause.in("id", matchingHistories);
+        }
+      };
+      itemRestriction = new BulkQueries.Restriction<ChangeLogItem, String>() {
+
+        public void restrict(Where<ChangeLogItem, String> whereClause) throws SQLException {
+          whereClause.in("field", changeLogFields);
+        }
+      };
+    }
+
+    List<History> histories = readPath != null
+        ? readPath.queryHistories(issueIds, changeLogFields)
+        : BulkQueries.queryForIn(historyDao, "issueId", issueIds, historyRestriction);
+    ListValuedMap<String, History> historiesPerIssue = MultiMapUtils.newListValuedHashMap();
+    List<String> historyIds = new ArrayList<>();
+    for (History history : histories) {
+      historiesPerIssue.put(history.getIssueId(), history);
+      historyIds.add(history.getId());
+    }
+
+    List<ChangeLogItem> changeLogItems = readPath != null
+        ? readPath.queryChangeLogItems(historyIds, changeLogFields)
+        : BulkQueries.queryForIn(changeLogItemDao, "historyId", historyIds, itemRestriction);
+    ListValuedMap<String, ChangeLogItem> itemsPerHistory = MultiMapUtils.newListValuedHashMap();
+    for (ChangeLogItem changeLogItem : changeLogItems) {
+      itemsPerHistory.put(changeLogItem.getHistoryId(), changeLogItem);
+    }
+
+    for (History history : histories) {
+      List<ChangeLogItem> changeList = itemsPerHistory.get(history.getId());
+      history.setItems(changeList.toArray(new ChangeLogItem[changeList.size()]));
+    }
+
+    for (Issue issue : issues) {
+      List<History> historyList = historiesPerIssue.get(issue.getId());
+
+      issue.setChangeLog(new ResponseList<History>());
+      issue.getChangeLog().setValues(historyList.toArray(new History[historyList.size()]));
+    }
+
+    logger.fine("Change log loaded for " + issues.size() + " issues: " + histories.size()
+        + " histories, " + changeLogItems.size() + " items.");
+  }
+
+}
@@ -0,0 +1,237 @@
+package crest.jira.data.miner.db;
+
+import crest.jira.data.miner.report.model.ExtendedIssue;
+import crest.jira.data.miner.report.model.ExtendedUser;
+import crest.jira.data.miner.report.model.TimeFrame;
+import crest.jira.data.retriever.model.Version;
+
+import org.apache.commons.collections4.MultiMapUtils;
+import org.apache.commons.collections4.MultiValuedMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class IssueGroupingIndex {
+
+  private static final String BOARD_KEY_PREFFIX = "BOARD-";
+
+  private ExtendedIssue[] issues;
+
+  private Map<String, PostingList> issuesPerBoard = new HashMap<>();
+  private Map<Version, PostingList> issuesPerRelease = new HashMap<>();
+  private Map<TimeFrame, Map<String, PostingList>> issuesPerTimeFrame = new EnumMap<>(
+      TimeFrame.class);
+  private Map<ExtendedUser, PostingList> issuesPerReporter = new HashMap<>();
+
+  /**
+   * Groups a list of issues by board, closest release, time frame and reporter
+   * in a single pass. Every group holds the positions of its issues on the
+   * list, in list order. The issues are copied, so later changes to the list
+   * do not alter the index, but make it stale.
+   *
+   * @param issues
+   *          Issues to group.
+   * @param timeFrames
+   *          Granularities of the time frame groups.
+   */
+  public IssueGroupingIndex(List<ExtendedIssue> issues, TimeFrame... timeFrames) {
+    this.issues = issues.toArray(new ExtendedIssue[issues.size()]);
+    for (TimeFrame timeFrame : timeFrames) {
+      issuesPerTimeFrame.put(timeFrame, new HashMap<String, PostingList>());
+    }
+
+    // Closest releases are assigned in bulk, sweeping the issues in report order.
+    Version[] closestReleases = ExtendedIssue.getClosestReleases(issues);
+
+    for (int ordinal = 0; ordinal < issues.size(); ordinal += 1) {
+      ExtendedIssue extendedIssue = this.issues[ordinal];
+
+      addToGroup(issuesPerBoard, extendedIssue.getIssue().getBoardId(), ordinal);
+      long created = extendedIssue.getIssue().getCreated().getTime();
+      for (Map.Entry<TimeFrame, Map<String, PostingList>> timeFrame : issuesPerTimeFrame
+          .entrySet()) {
+        addToGroup(timeFrame.getValue(),
+            timeFrame.getKey().getLabel(timeFrame.getKey().getOrdinal(created)), ordinal);
+      }
+
+      // Issues loaded without versions have no closest release.
+      if (closestReleases[ordinal] != null) {
+        addToGroup(issuesPerRelease, closestReleases[ordinal], ordinal);
+      }
+
+      addToGroup(issuesPerReporter, new ExtendedUser(extendedIssue.getIssue().getReporter()),
+          ordinal);
+    }
+  }
+
+  private static <K> void addToGroup(Map<K, PostingList> groups, K key, int ordinal) {
+    PostingList postingList = groups.get(key);
+    if (postingList == null) {
+      postingList = new PostingList();
+      groups.put(key, postingList);
+    }
+
+    postingList.add(ordinal);
+  }
+
+  /**
+   * Number of issues indexed.
+   *
+   * @return Size of the issue list when the index was built.
+   */
+  public int size() {
+    return issues.length;
+  }
+
+  /**
+   * Organizes the issues per board. Board keys have the form BOARD-01.
+   *
+   * @return Map of per-board lists of issues.
+   */
+  public MultiValuedMap<String, ExtendedIssue> organizeInBoards() {
+    MultiValuedMap<String, ExtendedIssue> issuesPerBoardKey = MultiMapUtils
+        .newListValuedHashMap();
+    for (Map.Entry<String, PostingList> board : issuesPerBoard.entrySet()) {
+      issuesPerBoardKey.putAll(getBoardKey(board.getKey()), getIssues(board.getValue()));
+    }
+
+    return issuesPerBoardKey;
+  }
+
+  /**
+   * Organizes the issues per closest release.
+   *
+   * @return Map of per-release lists of issues.
+   */
+  public MultiValuedMap<Version, ExtendedIssue> organizeInReleases() {
+    return toMultiValuedMap(issuesPerRelease);
+  }
+
+  /**
+   * Indicates if the issues were grouped at a time frame granularity.
+   *
+   * @param timeFrame
+   *          Time frame granularity.
+   * @return True if the groups are available.
+   */
+  public boolean hasTimeFrame(TimeFrame timeFrame) {
+    return issuesPerTimeFrame.containsKey(timeFrame);
+  }
+
+  /**
+   * Organizes the issues per time frame.
+   *
+   * @param timeFrame
+   *          Time frame granularity. It has to be one of the indexed ones.
+   * @return Map of per-time frame lists of issues, keyed by frame label.
+   */
+  public MultiValuedMap<String, ExtendedIssue> organizeInTimeFrames(TimeFrame timeFrame) {
+    if (!hasTimeFrame(timeFrame)) {
+      throw new IllegalArgumentException("The issues were not grouped per " + timeFrame);
+    }
+
+    return toMultiValuedMap(issuesPerTimeFrame.get(timeFrame));
+  }
+
+  /**
+   * Returns the issues of a board.
+   *
+   * @param boardId
+   *          Board identifier.
+   * @return Issues of the board, in list order.
+   */
+  public List<ExtendedIssue> getBoardIssues(String boardId) {
+    return getIssues(issuesPerBoard.get(boardId));
+  }
+
+  /**
+   * Returns the issues reported by a user.
+   *
+   * @param reporter
+   *          Reporter.
+   * @return Issues of the reporter, in list order.
+   */
+  public List<ExtendedIssue> getReporterIssues(ExtendedUser reporter) {
+    return getIssues(issuesPerReporter.get(reporter));
+  }
+
+  /**
+   * Returns the reporters of the issues of a board.
+   *
+   * @param boardId
+   *          Board identifier.
+   * @return Set of reporters.
+   */
+  public Set<ExtendedUser> getReporterCatalogPerBoard(String boardId) {
+    Set<ExtendedUser> reporterCatalog = new HashSet<>();
+    for (ExtendedIssue extendedIssue : getBoardIssues(boardId)) {
+      reporterCatalog.add(new ExtendedUser(extendedIssue.getIssue().getReporter()));
+    }
+
+    return reporterCatalog;
+  }
+
+  /**
+   * Produces the key of a board, as used in reports.
+   *
+   * @param boardId
+   *          Board identifier.
+   * @return Key as String.
+   */
+  public static String getBoardKey(String boardId) {
+    String boardKey = boardId;
+    if (boardKey.length() == 1) {
+      boardKey = "0" + boardKey;
+    }
+
+    return BOARD_KEY_PREFFIX + boardKey;
+  }
+
+  private <K> MultiValuedMap<K, ExtendedIssue> toMultiValuedMap(Map<K, PostingList> groups) {
+    MultiValuedMap<K, ExtendedIssue> issuesPerKey = MultiMapUtils.newListValuedHashMap();
+    for (Map.Entry<K, PostingList> group : groups.entrySet()) {
+      issuesPerKey.putAll(group.getKey(), getIssues(group.getValue()));
+    }
+
+    return issuesPerKey;
+  }
+
+  private List<ExtendedIssue> getIssues(PostingList postingList) {
+    if (postingList == null) {
+      return Collections.emptyList();
+    }
+
+    List<ExtendedIssue> groupIssues = new ArrayList<>(postingList.size);
+    for (int index = 0; index < postingList.size; index += 1) {
+      groupIssues.add(issues[postingList.ordinals[index]]);
+    }
+
+    return groupIssues;
+  }
+
+  /**
+   * Positions of the issues of a group, in ascending order.
+   */
+  private static class PostingList {
+
+    private int[] ordinals = new int[8];
+    private int size = 0;
+
+    public void add(int ordinal) {
+      if (size == ordinals.length) {
+        ordinals = Arrays.copyOf(ordinals, size * 2);
+      }
+
+      ordinals[size] = ordinal;
+      size += 1;
+    }
+  }
+
+}
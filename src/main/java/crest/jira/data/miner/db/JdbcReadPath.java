@@ -0,0 +1,284 @@
+package crest.jira.data.miner.db;
+
+import com.j256.ormlite.field.DatabaseFieldConfig;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.DatabaseTableConfig;
+
+import crest.jira.data.retriever.model.ChangeLogItem;
+import crest.jira.data.retriever.model.History;
+import crest.jira.data.retriever.model.Version;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+public class JdbcReadPath {
+
+  private static final String FOREIGN_ID_SUFFIX = "_id";
+
+  private ConnectionSource connectionSource;
+  private Map<Class<?>, Map<String, String>> columnsPerEntity = new HashMap<>();
+
+  /**
+   * Reads the entities needed by the analysis with hand-written statements,
+   * mapping every column by position instead of through the ORMLite DAOs. Only
+   * the attributes used by the analysis are read. Column names are taken from
+   * the ORMLite configuration of each entity, so both paths read the same
+   * tables.
+   *
+   * @param connectionSource
+   *          Connection source.
+   */
+  public JdbcReadPath(ConnectionSource connectionSource) {
+    this.connectionSource = connectionSource;
+  }
+
+  /**
+   * Obtains the histories of some issues: Identifier, issue and creation date.
+   *
+   * @param issueIds
+   *          Issue identifiers.
+   * @param changeLogFields
+   *          If not null, only histories with changes on these fields are
+   *          returned.
+   * @return Histories, in the order the database returns them.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public List<History> queryHistories(Collection<String> issueIds, List<String> changeLogFields)
+      throws SQLException {
+    String sql = "SELECT " + column(History.class, "id") + ", "
+        + column(History.class, "issueId") + ", " + column(History.class, "created") + " FROM "
+        + table(History.class) + " WHERE " + column(History.class, "issueId") + " IN (%s)";
+    if (changeLogFields != null) {
+      sql += " AND " + column(History.class, "id") + " IN (SELECT "
+          + column(ChangeLogItem.class, "historyId") + " FROM " + table(ChangeLogItem.class)
+          + " WHERE " + column(ChangeLogItem.class, "field") + " IN ("
+          + placeholders(changeLogFields.size()) + "))";
+    }
+
+    return queryForIn(sql, issueIds, changeLogFields, new RowMapper<History>() {
+
+      public History map(ResultSet resultSet) throws SQLException {
+        History history = new History();
+        history.setId(resultSet.getString(1));
+        history.setIssueId(resultSet.getString(2));
+        history.setCreated(toDate(resultSet.getTimestamp(3)));
+        return history;
+      }
+    });
+  }
+
+  /**
+   * Obtains the items of some histories: Field, previous and new values, and
+   * history.
+   *
+   * @param historyIds
+   *          History identifiers.
+   * @param changeLogFields
+   *          If not null, only items of these fields are returned.
+   * @return Change log items, in the order the database returns them.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public List<ChangeLogItem> queryChangeLogItems(Collection<String> historyIds,
+      List<String> changeLogFields) throws SQLException {
+    String sql = "SELECT " + column(ChangeLogItem.class, "field") + ", "
+        + column(ChangeLogItem.class, "from") + ", " + column(ChangeLogItem.class, "fromString")
+        + ", " + column(ChangeLogItem.class, "to") + ", "
+        + column(ChangeLogItem.class, "toString") + ", "
+        + column(ChangeLogItem.class, "historyId") + " FROM " + table(ChangeLogItem.class)
+        + " WHERE " + column(ChangeLogItem.class, "historyId") + " IN (%s)";
+    if (changeLogFields != null) {
+      sql += " AND " + column(ChangeLogItem.class, "field") + " IN ("
+          + placeholders(changeLogFields.size()) + ")";
+    }
+
+    return queryForIn(sql, historyIds, changeLogFields, new RowMapper<ChangeLogItem>() {
+
+      public ChangeLogItem map(ResultSet resultSet) throws SQLException {
+        ChangeLogItem changeLogItem = new ChangeLogItem();
+        changeLogItem.setField(resultSet.getString(1));
+        changeLogItem.setFrom(resultSet.getString(2));
+        changeLogItem.setFromString(resultSet.getString(3));
+        changeLogItem.setTo(resultSet.getString(4));
+        changeLogItem.setToString(resultSet.getString(5));
+        changeLogItem.setHistoryId(resultSet.getString(6));
+        return changeLogItem;
+      }
+    });
+  }
+
+  /**
+   * Obtains versions by the value of one of their fields: Identifier, name,
+   * release date and project.
+   *
+   * @param fieldName
+   *          Field to filter, like "id" or "projectId".
+   * @param values
+   *          Values of the field.
+   * @return Versions, in the order the database returns them.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public List<Version> queryVersions(String fieldName, Collection<String> values)
+      throws SQLException {
+    String sql = "SELECT " + column(Version.class, "id") + ", " + column(Version.class, "name")
+        + ", " + column(Version.class, "releaseDate") + ", "
+        + column(Version.class, "projectId") + " FROM " + table(Version.class) + " WHERE "
+        + column(Version.class, fieldName) + " IN (%s)";
+
+    return queryForIn(sql, values, null, new RowMapper<Version>() {
+
+      public Version map(ResultSet resultSet) throws SQLException {
+        Version version = new Version(resultSet.getString(1), resultSet.getString(2),
+            toDate(resultSet.getTimestamp(3)));
+        version.setProjectId(resultSet.getString(4));
+        return version;
+      }
+    });
+  }
+
+  /**
+   * Obtains the version links of some issues, from a link table like
+   * FixVersionPerIssue or VersionPerIssue. No link entity is built.
+   *
+   * @param linkClass
+   *          Entity of the link table.
+   * @param issueIds
+   *          Issue identifiers.
+   * @return Pairs of issue and version identifiers, in the order the database
+   *         returns them.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public List<String[]> queryVersionLinks(Class<?> linkClass, Collection<String> issueIds)
+      throws SQLException {
+    String sql = "SELECT " + column(linkClass, "issueId") + ", " + column(linkClass, "version")
+        + " FROM " + table(linkClass) + " WHERE " + column(linkClass, "issueId") + " IN (%s)";
+
+    return queryForIn(sql, issueIds, null, new RowMapper<String[]>() {
+
+      public String[] map(ResultSet resultSet) throws SQLException {
+        return new String[] { resultSet.getString(1), resultSet.getString(2) };
+      }
+    });
+  }
+
+  /**
+   * Runs a query once per chunk of values. The %s in the statement is replaced
+   * by the placeholders of a chunk, and the extra arguments are bound after
+   * them.
+   */
+  private <T> List<T> queryForIn(String sqlTemplate, Collection<String> values,
+      List<String> extraArguments, RowMapper<T> rowMapper) throws SQLException {
+    List<String> distinctValues = new ArrayList<>(new LinkedHashSet<>(values));
+    List<String> fixedArguments = extraArguments != null ? extraArguments
+        : Collections.<String>emptyList();
+    List<T> results = new ArrayList<>();
+
+    Map<Integer, PreparedStatement> statementsPerChunkSize = new HashMap<>();
+    DatabaseConnection databaseConnection = connectionSource.getReadOnlyConnection();
+
+    try {
+      Connection connection = SqliteConnectionProfile.getJdbcConnection(databaseConnection);
+
+      for (int start = 0; start < distinctValues.size();
+          start += BulkQueries.MAX_QUERY_ARGUMENTS) {
+        List<String> valuesInChunk = distinctValues.subList(start,
+            Math.min(start + BulkQueries.MAX_QUERY_ARGUMENTS, distinctValues.size()));
+
+        PreparedStatement statement = statementsPerChunkSize.get(valuesInChunk.size());
+        if (statement == null) {
+          statement = connection.prepareStatement(
+              String.format(sqlTemplate, placeholders(valuesInChunk.size())));
+          statementsPerChunkSize.put(valuesInChunk.size(), statement);
+        }
+
+        int parameterIndex = 1;
+        for (String value : valuesInChunk) {
+          statement.setString(parameterIndex++, value);
+        }
+        for (String argument : fixedArguments) {
+          statement.setString(parameterIndex++, argument);
+        }
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            results.add(rowMapper.map(resultSet));
+          }
+        }
+      }
+    } finally {
+      for (PreparedStatement statement : statementsPerChunkSize.values()) {
+        statement.close();
+      }
+      connectionSource.releaseConnection(databaseConnection);
+    }
+
+    return results;
+  }
+
+  private static String placeholders(int count) {
+    StringBuilder placeholders = new StringBuilder();
+    for (int index = 0; index < count; index += 1) {
+      placeholders.append(index == 0 ? "?" : ", ?");
+    }
+
+    return placeholders.toString();
+  }
+
+  private static Date toDate(Timestamp timestamp) {
+    return timestamp != null ? new Date(timestamp.getTime()) : null;
+  }
+
+  private static String table(Class<?> entityClass) {
+    return "\"" + DatabaseTableConfig.extractTableName(entityClass) + "\"";
+  }
+
+  /**
+   * Resolves the column of a field as ORMLite does: The configured column name,
+   * or the field name, with the "_id" suffix for foreign fields.
+   */
+  private String column(Class<?> entityClass, String fieldName) throws SQLException {
+    Map<String, String> columns = columnsPerEntity.get(entityClass);
+    if (columns == null) {
+      columns = new HashMap<>();
+      for (DatabaseFieldConfig fieldConfig : DatabaseTableConfig
+          .fromClass(connectionSource, entityClass).getFieldConfigs()) {
+        String columnName = fieldConfig.getColumnName();
+        if (columnName == null) {
+          columnName = fieldConfig.isForeign() ? fieldConfig.getFieldName() + FOREIGN_ID_SUFFIX
+              : fieldConfig.getFieldName();
+        }
+        columns.put(fieldConfig.getFieldName(), columnName);
+      }
+      columnsPerEntity.put(entityClass, columns);
+    }
+
+    String columnName = columns.get(fieldName);
+    if (columnName == null) {
+      throw new SQLException(
+          "No column for the field " + fieldName + " of " + entityClass.getSimpleName());
+    }
+
+    return "\"" + columnName + "\"";
+  }
+
+  private interface RowMapper<T> {
+
+    T map(ResultSet resultSet) throws SQLException;
+  }
+
+}
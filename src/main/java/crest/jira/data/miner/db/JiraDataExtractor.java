@@ -1,8 +1,21 @@
 package crest.jira.data.miner.db;
 
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.stmt.DeleteBuilder;
 import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.DatabaseTableConfig;
+import com.j256.ormlite.table.TableUtils;
 
 import crest.jira.data.miner.config.ConfigurationProvider;
+import crest.jira.data.miner.db.ExtractionPipeline.WriteTask;
+import crest.jira.data.miner.db.model.BoardWatermark;
+import crest.jira.data.miner.db.model.ExtractionCheckpoint;
+import crest.jira.data.miner.db.model.IssueAnalysis;
+import crest.jira.data.miner.http.RecordReplayFilter;
+import crest.jira.data.miner.http.UpdatedSinceFilter;
+import crest.jira.data.miner.report.model.ExtendedIssue;
+import crest.jira.data.miner.report.model.VersionRankTable;
 import crest.jira.data.retriever.BoardRetriever;
 import crest.jira.data.retriever.EpicRetriever;
 import crest.jira.data.retriever.FieldRetriever;
@@ -42,8 +55,22 @@ import org.glassfish.jersey.jackson.JacksonFeature;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import javax.ws.rs.client.Client;
@@ -55,38 +82,117 @@ public class JiraDataExtractor {
 
   private static final String CHANGELOG_EXPAND = "changelog";
   private static final Integer MAX_ISSUES = null;
-
-  private static ConfigurationProvider configurationProvider = new ConfigurationProvider();
-
-  private static JiraEntityMiner<Board, String> boardMiner;
-  private static JiraEntityMiner<Epic, String> epicMiner;
-  private static JiraEntityMiner<Sprint, String> sprintMiner;
-  private static JiraEntityMiner<Issue, String> issueMiner;
-  private static JiraEntityMiner<CustomFieldsCatalog, String> customCatalogMiner;
-  private static JiraEntityMiner<Resolution, String> resolutionMiner;
-  private static JiraEntityMiner<Priority, String> priorityMiner;
-  private static JiraEntityMiner<IssueType, String> issueTypeMiner;
-  private static JiraEntityMiner<User, String> userMiner;
-  private static JiraEntityMiner<Comment, String> commentMiner;
-  private static JiraEntityMiner<History, String> historyMiner;
-  private static JiraEntityMiner<ChangeLogItem, String> changeItemMiner;
-
-  private static JiraEntityMiner<Project, String> projectMiner;
-  private static JiraEntityMiner<ProjectCategory, String> projectCategoryMiner;
-  private static JiraEntityMiner<Status, String> statusMiner;
-  private static JiraEntityMiner<StatusCategory, String> statusCategoryMiner;
-
-  private static JiraEntityMiner<Component, String> componentMiner;
-  private static JiraEntityMiner<ComponentPerIssue, String> componentPerIssuetMiner;
-  private static JiraEntityMiner<SubtaskPerIssue, String> subtaskPerIssuetMiner;
-  private static JiraEntityMiner<Version, String> versionMiner;
-  private static JiraEntityMiner<FixVersionPerIssue, String> fixVersionPerIssueMiner;
-  private static JiraEntityMiner<VersionPerIssue, String> versionPerIssueMiner;
-  private static JiraEntityMiner<ClosedSprintPerIssue, String> closedSprintPerIssueMiner;
+  private static final int EXTRACTION_WORKERS = Integer.getInteger("jira.extractor.workers", 1);
+  private static final boolean INCREMENTAL_MODE = Boolean.getBoolean("jira.extractor.incremental");
+  private static final int MAX_DELETE_ARGUMENTS = 500;
+  private static final int CHUNK_SIZE = Integer.getInteger("jira.extractor.chunkSize", 50);
+  private static final boolean BATCHED_WRITES = Boolean.getBoolean("jira.extractor.batchedWrites");
+  private static final int WRITE_BATCH_SIZE = Integer.getInteger("jira.extractor.batchSize",
+      5000);
+  private static final int WRITE_QUEUE_CAPACITY = Integer
+      .getInteger("jira.extractor.writeQueueCapacity", 8);
+  private static final long FIELD_CATALOG_TTL = Integer
+      .getInteger("jira.extractor.fieldCatalogTtlHours", 24) * 3600000L;
+  private static final long JQL_MARGIN = Integer.getInteger("jira.extractor.jqlMarginHours", 24)
+      * 3600000L;
+
+  private static final Comparator<IssueWithCustomFields> ISSUE_ID_COMPARATOR =
+      new Comparator<IssueWithCustomFields>() {
+
+        public int compare(IssueWithCustomFields oneIssue, IssueWithCustomFields anotherIssue) {
+          return compareIssueIds(oneIssue.getIssue().getId(), anotherIssue.getIssue().getId());
+        }
+      };
+
+  private static final String CHECKPOINT_ISSUE_COLUMN = "lastIssueId";
+
+  private static ConfigurationProvider configurationProvider;
+
+  private JiraEntityMiner<Board, String> boardMiner;
+  private JiraEntityMiner<Epic, String> epicMiner;
+  private JiraEntityMiner<Sprint, String> sprintMiner;
+  private JiraEntityMiner<Issue, String> issueMiner;
+  private JiraEntityMiner<CustomFieldsCatalog, String> customCatalogMiner;
+  private JiraEntityMiner<Resolution, String> resolutionMiner;
+  private JiraEntityMiner<Priority, String> priorityMiner;
+  private JiraEntityMiner<IssueType, String> issueTypeMiner;
+  private JiraEntityMiner<User, String> userMiner;
+  private JiraEntityMiner<Comment, String> commentMiner;
+  private JiraEntityMiner<History, String> historyMiner;
+  private JiraEntityMiner<ChangeLogItem, String> changeItemMiner;
+
+  private JiraEntityMiner<Project, String> projectMiner;
+  private JiraEntityMiner<ProjectCategory, String> projectCategoryMiner;
+  private JiraEntityMiner<Status, String> statusMiner;
+  private JiraEntityMiner<StatusCategory, String> statusCategoryMiner;
+
+  private JiraEntityMiner<Component, String> componentMiner;
+  private JiraEntityMiner<ComponentPerIssue, String> componentPerIssuetMiner;
+  private JiraEntityMiner<SubtaskPerIssue, String> subtaskPerIssuetMiner;
+  private JiraEntityMiner<Version, String> versionMiner;
+  private JiraEntityMiner<FixVersionPerIssue, String> fixVersionPerIssueMiner;
+  private JiraEntityMiner<VersionPerIssue, String> versionPerIssueMiner;
+  private JiraEntityMiner<ClosedSprintPerIssue, String> closedSprintPerIssueMiner;
+
+  private Dao<BoardWatermark, String> watermarkDao;
+  private Dao<ExtractionCheckpoint, String> checkpointDao;
+  private Dao<ChangeLogItem, String> changeItemDao;
+  private Dao<ComponentPerIssue, String> componentPerIssueDao;
+  private Dao<SubtaskPerIssue, String> subtaskPerIssueDao;
+  private Dao<FixVersionPerIssue, String> fixVersionPerIssueDao;
+  private Dao<VersionPerIssue, String> versionPerIssueDao;
+  private Dao<Version, String> versionDao;
+  private Dao<ClosedSprintPerIssue, String> closedSprintPerIssueDao;
+  private Dao<IssueAnalysis, String> analysisDao;
 
   private static JiraApiConfiguration jiraConfiguration;
-  private static Client restClient;
   private static Field[] fields;
+  private static FieldCatalogCache fieldCatalogCache;
+  private static Map<String, BoardWatermark> boardWatermarks = new HashMap<>();
+  private static Map<String, Date> updatedSincePerBoard = new ConcurrentHashMap<>();
+  private static Map<String, ExtractionCheckpoint> extractionCheckpoints = new HashMap<>();
+  private static RecordReplayFilter recordReplayFilter;
+  private static List<Object> clientFilters = new CopyOnWriteArrayList<>();
+
+  private Client restClient;
+  private BoardRetriever boardRetriever;
+  private SprintRetriever sprintRetriever;
+  private EpicRetriever epicRetriever;
+  private VersionRetriever versionRetriever;
+  private ExtractionPipeline pipeline;
+  private BatchedEntityWriter batchedWriter;
+  private ReferenceEntityCache referenceCache;
+
+  /**
+   * Creates an extraction context: A REST client and a set of miners that are
+   * used by a single worker.
+   * 
+   * @param connectionSource
+   *          Connection source.
+   * @param pipeline
+   *          Pipeline shared by all the contexts, that performs all database
+   *          writes on a single thread.
+   * @param batchedWriter
+   *          Writer for issue data in batched mode. If null, issue data is
+   *          written row by row through the miners.
+   * @param referenceCache
+   *          Reference entities already written on this run.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public JiraDataExtractor(ConnectionSource connectionSource, ExtractionPipeline pipeline,
+      BatchedEntityWriter batchedWriter, ReferenceEntityCache referenceCache)
+      throws SQLException {
+    this.pipeline = pipeline;
+    this.batchedWriter = batchedWriter;
+    this.referenceCache = referenceCache;
+    this.restClient = createRestClient();
+    this.boardRetriever = new BoardRetriever(restClient, jiraConfiguration, fields);
+    this.sprintRetriever = new SprintRetriever(restClient, jiraConfiguration, fields);
+    this.epicRetriever = new EpicRetriever(restClient, jiraConfiguration, fields);
+    this.versionRetriever = new VersionRetriever(restClient, jiraConfiguration);
+    setupDatabase(connectionSource);
+  }
 
   /**
    * Retrieves the information from all boards from a Jira Repository.
@@ -97,18 +203,150 @@ public class JiraDataExtractor {
    *           Many things can go wrong ...
    */
   public static void main(String... args) throws Exception {
-    ConnectionSource connectionSource = configurationProvider.getConnectionSource();
+    SqliteConnectionProfile profile = SqliteConnectionProfile
+        .fromSystemProperties(SqliteConnectionProfile.EXTRACTION);
+    ConnectionSource connectionSource = profile
+        .createConnectionSource(getConfigurationProvider().getConnectionSource());
+    SqliteConnectionProfile.getEffectivePragmas(connectionSource);
 
-    setupHttpConnection();
-    setupDatabase(connectionSource);
-    readAndWriteBoardData();
+    extract(connectionSource);
   }
 
-  private static void readAndWriteBoardData() throws Exception {
+  /**
+   * The configuration file is read only when it is needed, so extractions
+   * configured programmatically do not depend on it.
+   */
+  private static ConfigurationProvider getConfigurationProvider() {
+    if (configurationProvider == null) {
+      configurationProvider = new ConfigurationProvider();
+    }
+
+    return configurationProvider;
+  }
+
+  /**
+   * Retrieves the information from all boards, and writes it to the database
+   * provided.
+   * 
+   * @param connectionSource
+   *          Connection source.
+   * @return The pipeline used for writing, that contains the time spent per
+   *         stage.
+   * @throws Exception
+   *           Many things can go wrong ...
+   */
+  public static ExtractionPipeline extract(ConnectionSource connectionSource) throws Exception {
+    return extract(connectionSource, getConfigurationProvider().getJiraApiConfiguration());
+  }
+
+  /**
+   * Retrieves the information from all boards of the JIRA instance provided,
+   * and writes it to the database provided. The configuration file is not
+   * read.
+   * 
+   * @param connectionSource
+   *          Connection source.
+   * @param apiConfiguration
+   *          URL and credentials of the JIRA instance.
+   * @return The pipeline used for writing, that contains the time spent per
+   *         stage.
+   * @throws Exception
+   *           Many things can go wrong ...
+   */
+  public static ExtractionPipeline extract(ConnectionSource connectionSource,
+      JiraApiConfiguration apiConfiguration) throws Exception {
+    setupHttpConnection(connectionSource, apiConfiguration);
+    return readAndWriteBoardData(connectionSource);
+  }
+
+  /**
+   * Registers a filter on every REST client created after this call.
+   * 
+   * @param clientFilter
+   *          A JAX-RS client request or response filter.
+   */
+  public static void addClientFilter(Object clientFilter) {
+    clientFilters.add(clientFilter);
+  }
+
+  private static ExtractionPipeline readAndWriteBoardData(ConnectionSource connectionSource)
+      throws Exception {
+    BatchedEntityWriter batchedWriter = null;
+    if (BATCHED_WRITES) {
+      batchedWriter = new BatchedEntityWriter(connectionSource, WRITE_BATCH_SIZE);
+    }
+
+    ReferenceEntityCache referenceCache = new ReferenceEntityCache(connectionSource);
+    ExtractionPipeline pipeline = new ExtractionPipeline(WRITE_QUEUE_CAPACITY);
+    JiraDataExtractor extractor = new JiraDataExtractor(connectionSource, pipeline,
+        batchedWriter, referenceCache);
+    loadExtractionState(extractor);
+    new SchemaMaintenance(connectionSource).ensureIndexes();
+
+    Throwable failure = null;
+    pipeline.start();
+    try {
+      processAllBoards(connectionSource, extractor);
+      clearCheckpoints(extractor);
+    } catch (Throwable e) {
+      failure = e;
+      throw e;
+    } finally {
+      try {
+        finishPipeline(pipeline, failure);
+      } finally {
+        pipeline.logStatistics();
+        if (batchedWriter != null) {
+          batchedWriter.logStatistics();
+        }
+        referenceCache.logStatistics();
+        extractor.restClient.close();
+      }
+    }
+
+    fieldCatalogCache.storeRefreshedFields();
+    return pipeline;
+  }
+
+  private static void loadExtractionState(JiraDataExtractor extractor) throws SQLException {
+    boardWatermarks.clear();
+    updatedSincePerBoard.clear();
+    if (INCREMENTAL_MODE) {
+      for (BoardWatermark watermark : extractor.watermarkDao.queryForAll()) {
+        boardWatermarks.put(watermark.getBoardId(), watermark);
+        if (watermark.getMaxUpdated() != null) {
+          updatedSincePerBoard.put(watermark.getBoardId(), watermark.getMaxUpdated());
+        }
+      }
+    }
+
+    extractionCheckpoints.clear();
+    for (ExtractionCheckpoint checkpoint : extractor.checkpointDao.queryForAll()) {
+      extractionCheckpoints.put(checkpoint.getBoardId(), checkpoint);
+    }
+
+    if (!extractionCheckpoints.isEmpty()) {
+      logger.info("Resuming an interrupted run. Boards with committed data: "
+          + extractionCheckpoints.keySet());
+    }
+  }
+
+  /**
+   * Once all the boards are written, the checkpoint journal is no longer
+   * needed: The next run starts from scratch.
+   */
+  private static void clearCheckpoints(final JiraDataExtractor extractor) throws Exception {
+    extractor.pipeline.submit(new WriteTask() {
+
+      public void write() throws Exception {
+        extractor.checkpointDao.deleteBuilder().delete();
+      }
+    });
+  }
 
-    BoardRetriever boardRetriever = new BoardRetriever(restClient, jiraConfiguration, fields);
-    ResponseList<Board> allBoards = boardRetriever.getAllBoards();
-    boardMiner.writeToDatabase(allBoards);
+  private static void processAllBoards(ConnectionSource connectionSource,
+      final JiraDataExtractor extractor) throws Exception {
+    final ResponseList<Board> allBoards = extractor.boardRetriever.getAllBoards();
 
     int issuesWritten = 0;
 
@@ -120,8 +358,20 @@ public class JiraDataExtractor {
     };
     Arrays.sort(allBoards.getValues(), comparator);
 
+    extractor.pipeline.submit(new WriteTask() {
+
+      public void write() throws Exception {
+        extractor.boardMiner.writeToDatabase(allBoards);
+      }
+    });
+
+    if (EXTRACTION_WORKERS > 1) {
+      processBoardsInParallel(connectionSource, extractor, allBoards.getValues());
+      return;
+    }
+
     for (Board board : allBoards.getValues()) {
-      issuesWritten = processBoard(board.getId());
+      issuesWritten = extractor.processBoard(board.getId());
       if (MAX_ISSUES != null && issuesWritten >= MAX_ISSUES) {
         logger.info(issuesWritten + " were written on the Database.");
         return;
@@ -130,23 +380,161 @@ public class JiraDataExtractor {
   }
 
   @SuppressWarnings("unused")
-  private static void readAndWriteBoardData(String... mesosBoards) throws SQLException, Exception {
-    for (String boardId : mesosBoards) {
-      processBoard(boardId);
+  private static void readAndWriteBoardData(ConnectionSource connectionSource,
+      String... mesosBoards) throws SQLException, Exception {
+    ExtractionPipeline pipeline = new ExtractionPipeline(WRITE_QUEUE_CAPACITY);
+    JiraDataExtractor extractor = new JiraDataExtractor(connectionSource, pipeline, null,
+        new ReferenceEntityCache(connectionSource));
+    loadExtractionState(extractor);
+
+    Throwable failure = null;
+    pipeline.start();
+    try {
+      for (String boardId : mesosBoards) {
+        extractor.processBoard(boardId);
+      }
+      clearCheckpoints(extractor);
+    } catch (Throwable e) {
+      failure = e;
+      throw e;
+    } finally {
+      try {
+        finishPipeline(pipeline, failure);
+      } finally {
+        extractor.restClient.close();
+      }
     }
   }
 
-  private static void setupHttpConnection() {
-    jiraConfiguration = configurationProvider.getJiraApiConfiguration();
+  /**
+   * Waits for the pending writes. A write failure is thrown only if the
+   * extraction did not fail already: Otherwise, it is attached to the original
+   * failure as suppressed, so the original cause is not hidden.
+   */
+  private static void finishPipeline(ExtractionPipeline pipeline, Throwable primaryFailure)
+      throws Exception {
+    try {
+      pipeline.finish();
+    } catch (Exception e) {
+      if (primaryFailure == null) {
+        throw e;
+      }
+      primaryFailure.addSuppressed(e);
+    }
+  }
+
+  /**
+   * Processes the boards on a pool of workers. Each worker borrows its own
+   * extraction context, so the REST retrieval of several boards happens
+   * concurrently while the pipeline performs the database writes.
+   */
+  private static void processBoardsInParallel(ConnectionSource connectionSource,
+      JiraDataExtractor extractor, Board[] boards) throws Exception {
+    logger.info("Processing " + boards.length + " boards using " + EXTRACTION_WORKERS
+        + " workers.");
+
+    final BlockingQueue<JiraDataExtractor> contexts = new ArrayBlockingQueue<>(
+        EXTRACTION_WORKERS);
+    // Contexts taken by a task are not on the queue, so every context created
+    // is tracked separately to be closed.
+    List<JiraDataExtractor> createdContexts = new ArrayList<>(EXTRACTION_WORKERS);
+    ExecutorService executor = null;
+
+    try {
+      for (int index = 0; index < EXTRACTION_WORKERS; index += 1) {
+        JiraDataExtractor context = new JiraDataExtractor(connectionSource, extractor.pipeline,
+            extractor.batchedWriter, extractor.referenceCache);
+        createdContexts.add(context);
+        contexts.add(context);
+      }
 
-    restClient = ClientBuilder.newClient();
+      executor = Executors.newFixedThreadPool(EXTRACTION_WORKERS);
+      List<Future<Integer>> results = new ArrayList<>();
+
+      for (Board board : boards) {
+        final String boardId = board.getId();
+        results.add(executor.submit(new Callable<Integer>() {
+
+          public Integer call() throws Exception {
+            JiraDataExtractor extractor = contexts.take();
+            try {
+              return extractor.processBoard(boardId);
+            } finally {
+              contexts.put(extractor);
+            }
+          }
+        }));
+      }
+      executor.shutdown();
+
+      for (Future<Integer> result : results) {
+        int issuesWritten = result.get();
+        if (MAX_ISSUES != null && issuesWritten >= MAX_ISSUES) {
+          logger.info(issuesWritten + " were written on the Database.");
+          return;
+        }
+      }
+    } catch (ExecutionException e) {
+      throw new Exception("Board extraction failed", e.getCause());
+    } finally {
+      try {
+        if (executor != null) {
+          // The remaining boards are cancelled, and the REST clients are closed
+          // once no task uses them.
+          executor.shutdownNow();
+          executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+      } finally {
+        for (JiraDataExtractor context : createdContexts) {
+          context.restClient.close();
+        }
+      }
+    }
+  }
+
+  private static void setupHttpConnection(ConnectionSource connectionSource,
+      JiraApiConfiguration apiConfiguration) throws Exception {
+    jiraConfiguration = apiConfiguration;
+    recordReplayFilter = RecordReplayFilter.fromSystemProperties();
+
+    if (fieldCatalogCache == null) {
+      fieldCatalogCache = new FieldCatalogCache(connectionSource, FIELD_CATALOG_TTL);
+    }
+
+    fields = fieldCatalogCache.getFields(new Callable<Field[]>() {
+
+      public Field[] call() throws Exception {
+        Client restClient = createRestClient();
+        try {
+          FieldRetriever fieldRetriever = new FieldRetriever(restClient, jiraConfiguration);
+          return fieldRetriever.getFields();
+        } finally {
+          restClient.close();
+        }
+      }
+    });
+  }
+
+  private static Client createRestClient() {
+    Client restClient = ClientBuilder.newClient();
     restClient.register(JacksonFeature.class);
 
-    FieldRetriever fieldRetriever = new FieldRetriever(restClient, jiraConfiguration);
-    fields = fieldRetriever.getFields();
+    if (recordReplayFilter != null) {
+      restClient.register(recordReplayFilter);
+    }
+
+    // Issues not updated since the last extraction are not even downloaded.
+    if (INCREMENTAL_MODE) {
+      restClient.register(new UpdatedSinceFilter(updatedSincePerBoard, JQL_MARGIN));
+    }
+
+    for (Object clientFilter : clientFilters) {
+      restClient.register(clientFilter);
+    }
+    return restClient;
   }
 
-  private static void setupDatabase(ConnectionSource connectionSource) throws SQLException {
+  private void setupDatabase(ConnectionSource connectionSource) throws SQLException {
     boardMiner = new JiraEntityMiner<Board, String>(Board.class, connectionSource);
     epicMiner = new JiraEntityMiner<Epic, String>(Epic.class, connectionSource);
     sprintMiner = new JiraEntityMiner<Sprint, String>(Sprint.class, connectionSource);
@@ -182,44 +570,221 @@ public class JiraDataExtractor {
         connectionSource);
     closedSprintPerIssueMiner = new JiraEntityMiner<ClosedSprintPerIssue, String>(
         ClosedSprintPerIssue.class, connectionSource);
+
+    TableUtils.createTableIfNotExists(connectionSource, BoardWatermark.class);
+    discardOutdatedCheckpoints(connectionSource);
+    TableUtils.createTableIfNotExists(connectionSource, ExtractionCheckpoint.class);
+    TableUtils.createTableIfNotExists(connectionSource, IssueAnalysis.class);
+    watermarkDao = DaoManager.createDao(connectionSource, BoardWatermark.class);
+    checkpointDao = DaoManager.createDao(connectionSource, ExtractionCheckpoint.class);
+    changeItemDao = DaoManager.createDao(connectionSource, ChangeLogItem.class);
+    componentPerIssueDao = DaoManager.createDao(connectionSource, ComponentPerIssue.class);
+    subtaskPerIssueDao = DaoManager.createDao(connectionSource, SubtaskPerIssue.class);
+    fixVersionPerIssueDao = DaoManager.createDao(connectionSource, FixVersionPerIssue.class);
+    versionPerIssueDao = DaoManager.createDao(connectionSource, VersionPerIssue.class);
+    versionDao = DaoManager.createDao(connectionSource, Version.class);
+    closedSprintPerIssueDao = DaoManager.createDao(connectionSource, ClosedSprintPerIssue.class);
+    analysisDao = DaoManager.createDao(connectionSource, IssueAnalysis.class);
+  }
+
+  /**
+   * Checkpoints written by versions that counted chunks instead of recording
+   * issue identifiers cannot be resumed safely. Their table is dropped, so
+   * those boards are extracted from scratch.
+   */
+  private static void discardOutdatedCheckpoints(ConnectionSource connectionSource)
+      throws SQLException {
+    Dao<ExtractionCheckpoint, String> dao = DaoManager.createDao(connectionSource,
+        ExtractionCheckpoint.class);
+    List<String[]> columns = dao
+        .queryRaw("PRAGMA table_info('" + DatabaseTableConfig.extractTableName(
+            ExtractionCheckpoint.class) + "')")
+        .getResults();
+    if (columns.isEmpty()) {
+      return;
+    }
+
+    for (String[] column : columns) {
+      if (CHECKPOINT_ISSUE_COLUMN.equals(column[1])) {
+        return;
+      }
+    }
+
+    logger.warning("The checkpoints of the interrupted run have an older format. They are "
+        + "discarded, and its boards will be extracted from scratch.");
+    TableUtils.dropTable(connectionSource, ExtractionCheckpoint.class, false);
+  }
+
+  /**
+   * Compares issue identifiers as numbers, without parsing them.
+   */
+  private static int compareIssueIds(String oneId, String anotherId) {
+    if (oneId.length() != anotherId.length()) {
+      return oneId.length() - anotherId.length();
+    }
+    return oneId.compareTo(anotherId);
   }
 
-  private static int processBoard(String boardId) throws Exception, SQLException {
-    readAndWriteEpicData(boardId);
-    readAndWriteVersionData(boardId);
-    clearBeforeLoading(boardId);
-    ResponseList<Sprint> sprints = readAndWriteSprintData(boardId);
-    int issuesWritten = readAndWriteIssueData(boardId,
+  private int processBoard(final String boardId) throws Exception, SQLException {
+    ExtractionCheckpoint checkpoint = extractionCheckpoints.get(boardId);
+    if (checkpoint != null && checkpoint.isCompleted()) {
+      logger.info("Board " + boardId + " was committed on " + checkpoint.getLastCommit()
+          + " by a previous attempt of this run. Skipping.");
+      return 0;
+    }
+
+    final BoardWatermark watermark = boardWatermarks.get(boardId);
+    final boolean isResumed = checkpoint != null;
+
+    long fetchStart = System.nanoTime();
+    final List<Epic> epics = readEpicData(boardId);
+    final List<Version> versions = readVersionData(boardId);
+    final ResponseList<Sprint> sprints = readSprintData(boardId);
+    pipeline.recordStage(ExtractionPipeline.FETCH_STAGE, System.nanoTime() - fetchStart);
+
+    pipeline.submit(new WriteTask() {
+
+      public void write() throws Exception {
+        epicMiner.writeToDatabase(epics);
+        versionMiner.writeToDatabase(versions);
+
+        if (watermark == null && !isResumed) {
+          clearBeforeLoading(boardId);
+        }
+
+        if (sprints != null) {
+          sprintMiner.writeToDatabase(sprints);
+        }
+      }
+    });
+
+    Date previousMaxUpdated = watermark != null ? watermark.getMaxUpdated() : null;
+    if (watermark != null) {
+      logger.info("Board " + boardId + " was last extracted on " + watermark.getLastExtraction()
+          + ". Only issues updated since " + previousMaxUpdated + " will be retrieved.");
+    }
+
+    final BoardProgress progress = new BoardProgress(boardId, previousMaxUpdated, checkpoint);
+    if (isResumed) {
+      logger.info("Resuming board " + boardId + " after issue " + progress.lastCommittedIssueId
+          + ". Issues up to it are written again only if updated since "
+          + progress.issuesRetrieved + ".");
+    }
+
+    int issuesWritten = readAndWriteIssueData(progress,
         sprints != null ? sprints.getValues() : null);
+
+    pipeline.submit(new WriteTask() {
+
+      public void write() throws Exception {
+        watermarkDao.createOrUpdate(progress.watermark);
+        checkpointDao.createOrUpdate(new ExtractionCheckpoint(boardId,
+            progress.lastQueuedIssueId, progress.issuesRetrieved, true));
+      }
+    });
+
+    logger.info("Issues queued for writing for board " + boardId + ": " + issuesWritten);
     return issuesWritten;
   }
 
-  private static int readAndWriteIssueData(String boardId, Sprint[] sprints) throws Exception {
-    BoardRetriever boardRetriever = new BoardRetriever(restClient, jiraConfiguration, fields);
-
-    int issueCounter = 0;
-    List<IssueWithCustomFields> issuesFound = new ArrayList<>();
+  private int readAndWriteIssueData(BoardProgress progress, Sprint[] sprints) throws Exception {
+    String boardId = progress.boardId;
+    long fetchStart = System.nanoTime();
     List<IssueWithCustomFields> issuesPerBoard = boardRetriever.getIssuesForBoard(boardId,
         CHANGELOG_EXPAND);
-    issuesFound.addAll(issuesPerBoard);
+    pipeline.recordStage(ExtractionPipeline.FETCH_STAGE, System.nanoTime() - fetchStart);
 
-    if (issuesFound.isEmpty() && sprints != null && sprints.length > 0) {
+    boolean issuesFound = !issuesPerBoard.isEmpty();
+    int issuesWritten = writeIssuesInChunks(progress, issuesPerBoard);
+
+    if (!issuesFound && sprints != null && sprints.length > 0) {
       logger.info("Couldn't retrieve issues per Board on " + boardId + ". Trying from Sprints...");
-      SprintRetriever sprintRetriever = new SprintRetriever(restClient, jiraConfiguration, fields);
 
+      // Issues of all the sprints are chunked together, so the identifier of
+      // the last committed issue marks the progress on the whole board.
+      List<IssueWithCustomFields> issuesPerSprints = new ArrayList<>();
       for (Sprint sprint : sprints) {
-        issuesFound
-            .addAll(sprintRetriever.getIssuesForSprint(boardId, sprint.getId(), CHANGELOG_EXPAND));
+        fetchStart = System.nanoTime();
+        issuesPerSprints.addAll(
+            sprintRetriever.getIssuesForSprint(boardId, sprint.getId(), CHANGELOG_EXPAND));
+        pipeline.recordStage(ExtractionPipeline.FETCH_STAGE, System.nanoTime() - fetchStart);
       }
+
+      issuesWritten += writeIssuesInChunks(progress, issuesPerSprints);
     }
 
-    issueCounter = processIssueList(boardId, issuesFound);
-    logger.info("Issues written for board " + boardId + ": " + issueCounter);
+    return issuesWritten;
+  }
+
+  /**
+   * Transforms a list of retrieved issues in chunks of a fixed size, and queues
+   * every chunk for writing, so the intermediate entity lists never grow beyond
+   * the chunk size. The retriever returns all the issues of a board at once, so
+   * they are all in memory when this starts: The list is sorted in place, and
+   * every entry is cleared once its issue is taken into a chunk, so the issue
+   * can be collected as soon as the chunk is written. Issues are chunked in
+   * identifier order, and every chunk commits the identifier of its last issue:
+   * A resumed board skips the issues up to it that were not updated since a
+   * previous attempt retrieved them. Issues that are added to or removed from
+   * the board between attempts do not shift the others.
+   */
+  private int writeIssuesInChunks(final BoardProgress progress,
+      List<IssueWithCustomFields> issues) throws Exception {
+    Collections.sort(issues, ISSUE_ID_COMPARATOR);
+
+    final Date updatedSince = progress.updatedSince;
+    int issuesWritten = 0;
+    int position = 0;
+
+    while (position < issues.size()) {
+      final List<IssueWithCustomFields> chunk = new ArrayList<>(CHUNK_SIZE);
+      while (chunk.size() < CHUNK_SIZE && position < issues.size()) {
+        IssueWithCustomFields issueWithCustomFields = issues.set(position, null);
+        position += 1;
+        Issue issue = issueWithCustomFields.getIssue();
+        Date updated = issue.getUpdated();
+
+        if (updatedSince == null || updated == null || !updated.before(updatedSince)) {
+          progress.registerUpdate(issue);
+          if (!progress.isCommitted(issue)) {
+            chunk.add(issueWithCustomFields);
+          }
+        }
+      }
+
+      if (chunk.isEmpty()) {
+        continue;
+      }
+
+      progress.registerQueued(chunk.get(chunk.size() - 1).getIssue());
+      final String lastQueuedIssueId = progress.lastQueuedIssueId;
+      final boolean isResumed = progress.lastCommittedIssueId != null;
+
+      long transformStart = System.nanoTime();
+      final WriteTask issueListTask = processIssueList(progress.boardId, chunk);
+      pipeline.recordStage(ExtractionPipeline.TRANSFORM_STAGE,
+          System.nanoTime() - transformStart);
+
+      pipeline.submit(new WriteTask() {
+
+        public void write() throws Exception {
+          // A resumed board may write again issues committed by a previous
+          // attempt.
+          if (updatedSince != null || isResumed) {
+            clearBeforeUpdating(chunk);
+          }
+          issueListTask.write();
+          checkpointDao.createOrUpdate(new ExtractionCheckpoint(progress.boardId,
+              lastQueuedIssueId, progress.issuesRetrieved, false));
+        }
+      });
+      issuesWritten += chunk.size();
+    }
 
-    return issueCounter;
+    return issuesWritten;
   }
 
-  private static void clearBeforeLoading(String boardId) throws SQLException {
+  private void clearBeforeLoading(String boardId) throws SQLException {
     changeItemMiner.deleteAccordingValue("boardId", boardId);
     componentPerIssuetMiner.deleteAccordingValue("boardId", boardId);
     subtaskPerIssuetMiner.deleteAccordingValue("boardId", boardId);
@@ -228,38 +793,71 @@ public class JiraDataExtractor {
     closedSprintPerIssueMiner.deleteAccordingValue("boardId", boardId);
   }
 
-  private static void readAndWriteEpicData(String boardId) throws Exception {
-    EpicRetriever epicRetriever = new EpicRetriever(restClient, jiraConfiguration, fields);
+  /**
+   * Removes the dependent rows only for the issues that are going to be
+   * upserted on an incremental extraction.
+   */
+  private void clearBeforeUpdating(List<IssueWithCustomFields> issueList) throws SQLException {
+    List<String> issueIds = new ArrayList<>();
+    List<String> historyIds = new ArrayList<>();
 
-    List<Epic> epics = epicRetriever.getEpics(boardId);
-    for (Epic epic : epics) {
-      epic.setBoardId(boardId);
+    for (IssueWithCustomFields issueWithCustomFields : issueList) {
+      Issue issue = issueWithCustomFields.getIssue();
+      issueIds.add(issue.getId());
+
+      if (issue.getChangeLog() != null && issue.getChangeLog().getValues() != null) {
+        for (History history : issue.getChangeLog().getValues()) {
+          historyIds.add(history.getId());
+        }
+      }
     }
 
-    epicMiner.writeToDatabase(epics);
+    deleteAccordingValues(changeItemDao, "historyId", historyIds);
+    deleteAccordingValues(componentPerIssueDao, "issueId", issueIds);
+    deleteAccordingValues(subtaskPerIssueDao, "issueId", issueIds);
+    deleteAccordingValues(fixVersionPerIssueDao, "issueId", issueIds);
+    deleteAccordingValues(versionPerIssueDao, "issueId", issueIds);
+    deleteAccordingValues(closedSprintPerIssueDao, "issueId", issueIds);
   }
 
-  private static void readAndWriteVersionData(String boardId) throws Exception {
-    VersionRetriever versionRetriever = new VersionRetriever(restClient, jiraConfiguration);
-    List<Version> versions = versionRetriever.getAllVersions(boardId);
-    versionMiner.writeToDatabase(versions);
+  private static <T> void deleteAccordingValues(Dao<T, String> dao, String columnName,
+      List<String> values) throws SQLException {
+    for (int start = 0; start < values.size(); start += MAX_DELETE_ARGUMENTS) {
+      List<String> valuesInChunk = values.subList(start,
+          Math.min(start + MAX_DELETE_ARGUMENTS, values.size()));
+
+      DeleteBuilder<T, String> deleteBuilder = dao.deleteBuilder();
+      deleteBuilder.where().in(columnName, valuesInChunk);
+      deleteBuilder.delete();
+    }
   }
 
-  private static ResponseList<Sprint> readAndWriteSprintData(String boardId) throws Exception {
-    SprintRetriever sprintRetriever = new SprintRetriever(restClient, jiraConfiguration, fields);
+  private List<Epic> readEpicData(String boardId) throws Exception {
+    List<Epic> epics = epicRetriever.getEpics(boardId);
+    for (Epic epic : epics) {
+      epic.setBoardId(boardId);
+    }
 
-    ResponseList<Sprint> sprints = sprintRetriever.getAllSprints(boardId);
+    return epics;
+  }
 
-    if (sprints != null) {
-      sprintMiner.writeToDatabase(sprints);
-    }
+  private List<Version> readVersionData(String boardId) throws Exception {
+    return versionRetriever.getAllVersions(boardId);
+  }
 
-    return sprints;
+  private ResponseList<Sprint> readSprintData(String boardId) throws Exception {
+    return sprintRetriever.getAllSprints(boardId);
   }
 
-  private static int processIssueList(String boardId, List<IssueWithCustomFields> issueList)
+  /**
+   * Transforms a list of issues into the entities to be stored, including the
+   * analysis attributes of every issue.
+   * 
+   * @return Task that writes the entities, to be executed by the pipeline.
+   */
+  private WriteTask processIssueList(String boardId, List<IssueWithCustomFields> issueList)
       throws Exception {
-    ArrayList<Issue> issues = new ArrayList<Issue>();
+    final ArrayList<Issue> issues = new ArrayList<Issue>();
     ArrayList<CustomFieldsCatalog> customFields = new ArrayList<CustomFieldsCatalog>();
     ArrayList<Resolution> resolutions = new ArrayList<Resolution>();
     ArrayList<Priority> priorities = new ArrayList<Priority>();
@@ -338,39 +936,155 @@ public class JiraDataExtractor {
       }
     }
 
-    componentMiner.writeToDatabase(components);
-    componentPerIssuetMiner.writeToDatabase(componentsPerIssue);
-    versionMiner.writeToDatabase(versions);
+    return new WriteTask() {
 
-    statusCategoryMiner.writeToDatabase(statusCategory);
-    statusMiner.writeToDatabase(status);
+      public void write() throws Exception {
+        writeToDatabase(componentMiner, components);
+        writeToDatabase(componentPerIssuetMiner, componentsPerIssue);
+        writeToDatabase(versionMiner, versions);
 
-    projectCategoryMiner.writeToDatabase(projectCategories);
-    projectMiner.writeToDatabase(projects);
-    commentMiner.writeToDatabase(comments);
-    historyMiner.writeToDatabase(histories);
+        writeToDatabase(statusCategoryMiner, referenceCache.filterWritten(statusCategory));
+        writeToDatabase(statusMiner, referenceCache.filterWritten(status));
 
-    userMiner.writeToDatabase(users);
-    priorityMiner.writeToDatabase(priorities);
-    changeItemMiner.writeToDatabase(changeLogItems);
-    issueTypeMiner.writeToDatabase(issueTypes);
-    subtaskPerIssuetMiner.writeToDatabase(subtasksPerIssue);
-    fixVersionPerIssueMiner.writeToDatabase(fixVersionsPerIssue);
-    versionPerIssueMiner.writeToDatabase(versionsPerIssue);
-    closedSprintPerIssueMiner.writeToDatabase(closedSprintIssue);
+        writeToDatabase(projectCategoryMiner, referenceCache.filterWritten(projectCategories));
+        writeToDatabase(projectMiner, referenceCache.filterWritten(projects));
+        writeToDatabase(commentMiner, comments);
+        writeToDatabase(historyMiner, histories);
 
-    resolutionMiner.writeToDatabase(resolutions);
+        writeToDatabase(userMiner, referenceCache.filterWritten(users));
+        writeToDatabase(priorityMiner, referenceCache.filterWritten(priorities));
+        writeToDatabase(changeItemMiner, changeLogItems);
+        writeToDatabase(issueTypeMiner, referenceCache.filterWritten(issueTypes));
+        writeToDatabase(subtaskPerIssuetMiner, subtasksPerIssue);
+        writeToDatabase(fixVersionPerIssueMiner, fixVersionsPerIssue);
+        writeToDatabase(versionPerIssueMiner, versionsPerIssue);
+        writeToDatabase(closedSprintPerIssueMiner, closedSprintIssue);
 
-    // CreateOrUpdateStatus createOrUpdateStatus =
-    // issueMiner.writeToDatabase(issues);
-    issueMiner.writeToDatabase(issues);
-    customCatalogMiner.writeToDatabase(customFields);
+        writeToDatabase(resolutionMiner, referenceCache.filterWritten(resolutions));
 
-    // if (createOrUpdateStatus != null) {
-    // issueCounter += createOrUpdateStatus.getNumLinesChanged();
-    // }
+        writeToDatabase(issueMiner, issues);
+        writeToDatabase(customCatalogMiner, customFields);
+
+        if (batchedWriter != null) {
+          batchedWriter.flush();
+        }
+
+        // The analysis needs the versions of the chunk to be stored first.
+        writeAnalyses(analyzeIssues(issues));
+        if (batchedWriter != null) {
+          batchedWriter.flush();
+        }
+      }
+    };
+  }
+
+  /**
+   * Calculates the analysis attributes of the issues while their complete
+   * change logs are at hand. The project versions are the ones stored on the
+   * database, read through a VersionRepository as JiraIssueListDao does, so
+   * the releases to fix match the ones calculated when loading the issues.
+   * Versions stored after the issues, by later chunks or extractions, are not
+   * considered.
+   */
+  private List<IssueAnalysis> analyzeIssues(List<Issue> issues) throws SQLException {
+    VersionRepository versionRepository = new VersionRepository(versionDao,
+        fixVersionPerIssueDao, versionPerIssueDao);
+
+    List<IssueAnalysis> analyses = new ArrayList<>(issues.size());
+    for (Issue issue : issues) {
+      analyses.add(analyzeIssue(issue,
+          versionRepository.getVersionRankTable(issue.getProject().getId())));
+    }
+
+    return analyses;
+  }
 
-    return issues.size();
+  private static IssueAnalysis analyzeIssue(Issue issue, VersionRankTable projectTable) {
+    ExtendedIssue extendedIssue = new ExtendedIssue(issue);
+
+    // Without affected or fix versions, there are no releases to fix.
+    if (issue.getVersions() != null && issue.getFixVersions() != null) {
+      extendedIssue.setVersionRankTable(projectTable);
+    }
+
+    return new IssueAnalysis(extendedIssue);
+  }
+
+  private void writeAnalyses(List<IssueAnalysis> analyses) throws SQLException {
+    if (batchedWriter != null) {
+      batchedWriter.addToBatch(analyses);
+    } else {
+      for (IssueAnalysis analysis : analyses) {
+        analysisDao.createOrUpdate(analysis);
+      }
+    }
+  }
+
+  private <T> void writeToDatabase(JiraEntityMiner<T, String> miner, List<T> entities)
+      throws SQLException {
+    if (batchedWriter != null) {
+      batchedWriter.addToBatch(entities);
+    } else {
+      miner.writeToDatabase(entities);
+    }
+  }
+
+  /**
+   * Keeps track of the issues queued for a board, and of the watermark to store
+   * once all of them are written.
+   */
+  private static class BoardProgress {
+
+    private String boardId;
+    private Date updatedSince;
+    private BoardWatermark watermark;
+    private String lastCommittedIssueId;
+    private String lastQueuedIssueId;
+    private Date issuesRetrieved;
+
+    public BoardProgress(String boardId, Date updatedSince, ExtractionCheckpoint checkpoint) {
+      this.boardId = boardId;
+      this.updatedSince = updatedSince;
+      this.watermark = new BoardWatermark(boardId, new Date(), updatedSince);
+
+      this.issuesRetrieved = new Date();
+      if (checkpoint != null && checkpoint.getLastIssueId() != null) {
+        this.lastCommittedIssueId = checkpoint.getLastIssueId();
+        this.lastQueuedIssueId = lastCommittedIssueId;
+        this.issuesRetrieved = checkpoint.getIssuesRetrieved();
+      }
+    }
+
+    public void registerUpdate(Issue issue) {
+      Date updated = issue.getUpdated();
+      if (updated != null
+          && (watermark.getMaxUpdated() == null || updated.after(watermark.getMaxUpdated()))) {
+        watermark.setMaxUpdated(updated);
+      }
+    }
+
+    /**
+     * Indicates if a previous attempt committed the issue as it is now: Its
+     * identifier is not after the last committed one, and it was not updated
+     * since it was retrieved. The clocks of JIRA and of this machine may
+     * differ, so updates close to the retrieval are written again.
+     */
+    public boolean isCommitted(Issue issue) {
+      if (lastCommittedIssueId == null || compareIssueIds(issue.getId(),
+          lastCommittedIssueId) > 0) {
+        return false;
+      }
+
+      Date updated = issue.getUpdated();
+      return updated != null && issuesRetrieved != null
+          && updated.getTime() < issuesRetrieved.getTime() - JQL_MARGIN;
+    }
+
+    public void registerQueued(Issue issue) {
+      if (lastQueuedIssueId == null || compareIssueIds(issue.getId(), lastQueuedIssueId) > 0) {
+        lastQueuedIssueId = issue.getId();
+      }
+    }
   }
 
 }
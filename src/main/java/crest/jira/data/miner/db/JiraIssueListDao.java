@@ -1,5 +1,6 @@
 package crest.jira.data.miner.db;
 
+import com.j256.ormlite.dao.CloseableIterator;
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
 import com.j256.ormlite.stmt.PreparedQuery;
@@ -7,8 +8,10 @@ import com.j256.ormlite.stmt.QueryBuilder;
 import com.j256.ormlite.stmt.Where;
 import com.j256.ormlite.support.ConnectionSource;
 
+import crest.jira.data.miner.db.model.IssueAnalysis;
 import crest.jira.data.miner.report.model.ExtendedIssue;
 import crest.jira.data.miner.report.model.ExtendedUser;
+import crest.jira.data.miner.report.model.TimeFrame;
 import crest.jira.data.retriever.map.ResponseList;
 import crest.jira.data.retriever.model.ChangeLogItem;
 import crest.jira.data.retriever.model.FixVersionPerIssue;
@@ -17,30 +20,42 @@ import crest.jira.data.retriever.model.Issue;
 import crest.jira.data.retriever.model.Version;
 import crest.jira.data.retriever.model.VersionPerIssue;
 
-import org.apache.commons.collections4.MultiMapUtils;
 import org.apache.commons.collections4.MultiValuedMap;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class JiraIssueListDao {
 
   private static Logger logger = Logger.getLogger(JiraIssueListDao.class.getName());
-  private static final String BOARD_KEY_PREFFIX = "BOARD-";
   private static final String BUG_ISSUE_TYPE = "1";
+  public static final String PRIORITY_FIELD = "priority";
+  private static final int STREAM_BATCH_SIZE = Integer.getInteger("jira.analysis.streamBatchSize",
+      500);
+  private static final TimeFrame DEFAULT_TIME_FRAME = TimeFrame.fromSystemProperties();
+  private static final boolean RAW_JDBC_READS = Boolean.getBoolean("jira.analysis.rawJdbcReads");
 
+  private ConnectionSource connectionSource;
   private Dao<Issue, String> issueDao;
-  private Dao<History, String> historyDao;
-  private Dao<ChangeLogItem, String> changeLogItemDao;
-  private Dao<Version, String> versionDao;
-  private Dao<FixVersionPerIssue, String> fixVersionDao;
-  private Dao<VersionPerIssue, String> affectedVersionDao;
+  private HistoryLoader historyLoader;
+  private VersionRepository versionRepository;
+  private Dao<IssueAnalysis, String> analysisDao;
+  private AnalysisSnapshot snapshot;
+  private IssueGroupingIndex groupingIndex;
+  private long groupingVersionChanges;
+  private TimeFrame[] timeFrames = { DEFAULT_TIME_FRAME };
+  private boolean analysisOnly = false;
+  private String[] changeLogFields = new String[0];
 
   private List<ExtendedIssue> issueList = new ArrayList<ExtendedIssue>();
 
@@ -53,12 +68,88 @@ public class JiraIssueListDao {
    *           In case of SQL errors.
    */
   public JiraIssueListDao(ConnectionSource connectionSource) throws SQLException {
+    this.connectionSource = connectionSource;
     this.issueDao = DaoManager.createDao(connectionSource, Issue.class);
-    this.historyDao = DaoManager.createDao(connectionSource, History.class);
-    this.changeLogItemDao = DaoManager.createDao(connectionSource, ChangeLogItem.class);
-    this.versionDao = DaoManager.createDao(connectionSource, Version.class);
-    this.fixVersionDao = DaoManager.createDao(connectionSource, FixVersionPerIssue.class);
-    this.affectedVersionDao = DaoManager.createDao(connectionSource, VersionPerIssue.class);
+
+    Dao<History, String> historyDao = DaoManager.createDao(connectionSource, History.class);
+    Dao<ChangeLogItem, String> changeLogItemDao = DaoManager.createDao(connectionSource,
+        ChangeLogItem.class);
+    this.historyLoader = new HistoryLoader(historyDao, changeLogItemDao);
+
+    Dao<Version, String> versionDao = DaoManager.createDao(connectionSource, Version.class);
+    Dao<FixVersionPerIssue, String> fixVersionDao = DaoManager.createDao(connectionSource,
+        FixVersionPerIssue.class);
+    Dao<VersionPerIssue, String> affectedVersionDao = DaoManager.createDao(connectionSource,
+        VersionPerIssue.class);
+    this.versionRepository = new VersionRepository(versionDao, fixVersionDao,
+        affectedVersionDao);
+    this.analysisDao = DaoManager.createDao(connectionSource, IssueAnalysis.class);
+
+    setRawJdbcReads(RAW_JDBC_READS);
+  }
+
+  /**
+   * Reads change logs, versions and version links with hand-written JDBC
+   * statements instead of the ORMLite DAOs. Issues are always read through
+   * ORMLite. The default is taken from the jira.analysis.rawJdbcReads system
+   * property.
+   * 
+   * @param rawJdbcReads
+   *          True to use the JDBC read path.
+   */
+  public void setRawJdbcReads(boolean rawJdbcReads) {
+    JdbcReadPath readPath = rawJdbcReads ? new JdbcReadPath(connectionSource) : null;
+    historyLoader.setReadPath(readPath);
+    versionRepository.setReadPath(readPath);
+  }
+
+  /**
+   * Restricts the change log loaded for every issue to some fields. Histories
+   * without changes on these fields are not loaded.
+   * 
+   * @param changeLogFields
+   *          Fields to load, like "priority". If empty, all of them are loaded.
+   */
+  public void setChangeLogFields(String... changeLogFields) {
+    this.changeLogFields = changeLogFields != null ? changeLogFields : new String[0];
+    historyLoader.setChangeLogFields(changeLogFields);
+  }
+
+  /**
+   * Enables analysis snapshots: Loads are read from the snapshot while the
+   * database does not change, and written to it otherwise. Issues read from a
+   * snapshot only have the CSV export fields, so callers state the fields they
+   * use.
+   * 
+   * @param snapshot
+   *          Snapshot to use. If null, all loads go to the database.
+   * @param issueFields
+   *          Issue fields read from the loaded issues. They have to be among
+   *          AnalysisSnapshot.CSV_EXPORT_FIELDS.
+   */
+  public void setSnapshot(AnalysisSnapshot snapshot, Set<String> issueFields) {
+    if (snapshot != null && !AnalysisSnapshot.CSV_EXPORT_FIELDS.containsAll(issueFields)) {
+      Set<String> missingFields = new TreeSet<>(issueFields);
+      missingFields.removeAll(AnalysisSnapshot.CSV_EXPORT_FIELDS);
+      throw new IllegalArgumentException(
+          "Analysis snapshots do not store the fields " + missingFields);
+    }
+
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Loads issues with the analysis attributes calculated at extraction time,
+   * skipping their change log. Versions are still loaded, since the CSV
+   * records and the closest release need them. It suits reports that only
+   * need the original priority, the resolution time, the acceptance and the
+   * releases to fix. Issues without stored attributes are loaded completely.
+   * 
+   * @param analysisOnly
+   *          True to skip the change log.
+   */
+  public void setAnalysisOnly(boolean analysisOnly) {
+    this.analysisOnly = analysisOnly;
   }
 
   /**
@@ -68,14 +159,15 @@ public class JiraIssueListDao {
    *           Constructing SQL can produce errors.
    */
   public void loadAllBugs() throws SQLException {
-    QueryBuilder<Issue, String> queryBuilder = issueDao.queryBuilder();
-    Where<Issue, String> whereClause = queryBuilder.where();
-    whereClause.eq("issueTypeId", BUG_ISSUE_TYPE);
-    PreparedQuery<Issue> preparedQuery = queryBuilder.prepare();
+    String loadKey = "bugs;changeLogFields=" + Arrays.toString(changeLogFields);
+    if (loadFromSnapshot(loadKey)) {
+      return;
+    }
 
-    List<Issue> issuesFromDb = issueDao.query(preparedQuery);
-    loadHistoryForIssueList(issuesFromDb);
-    loadVersionsForIssueList();
+    int firstIssue = issueList.size();
+    issueList.addAll(extendIssues(issueDao.query(prepareBugsQuery())));
+    groupingIndex = null;
+    writeSnapshot(loadKey, firstIssue);
   }
 
   /**
@@ -86,71 +178,240 @@ public class JiraIssueListDao {
    */
   public void loadBoardIssues(String boardId, boolean onlyBugs, Object... reporters)
       throws SQLException {
-    QueryBuilder<Issue, String> queryBuilder = issueDao.queryBuilder();
-    Where<Issue, String> whereClause = queryBuilder.where();
+    String loadKey = "board=" + boardId + ";onlyBugs=" + onlyBugs + ";reporters="
+        + Arrays.toString(reporters) + ";changeLogFields=" + Arrays.toString(changeLogFields);
+    if (loadFromSnapshot(loadKey)) {
+      return;
+    }
 
-    whereClause.eq("boardId", boardId);
+    int firstIssue = issueList.size();
+    issueList
+        .addAll(extendIssues(issueDao.query(prepareBoardQuery(boardId, onlyBugs, reporters))));
+    groupingIndex = null;
+    writeSnapshot(loadKey, firstIssue);
+  }
 
-    boolean filterByReporters = reporters != null && reporters.length > 0;
-    if (onlyBugs || filterByReporters) {
-      whereClause.and();
+  private boolean loadFromSnapshot(String loadKey) {
+    if (snapshot == null || analysisOnly) {
+      return false;
     }
 
-    if (filterByReporters) {
-      whereClause.in("reporterId", reporters);
+    List<ExtendedIssue> issuesFromSnapshot = snapshot.read(loadKey);
+    if (issuesFromSnapshot == null) {
+      return false;
     }
-    if (onlyBugs) {
-      whereClause.eq("issueTypeId", BUG_ISSUE_TYPE);
+
+    issueList.addAll(issuesFromSnapshot);
+    groupingIndex = null;
+    return true;
+  }
+
+  private void writeSnapshot(String loadKey, int firstIssue) throws SQLException {
+    if (snapshot == null || analysisOnly) {
+      return;
     }
 
-    queryBuilder.orderBy("created", true);
-    PreparedQuery<Issue> preparedQuery = queryBuilder.prepare();
+    try {
+      snapshot.write(loadKey, issueList.subList(firstIssue, issueList.size()),
+          versionRepository);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "The analysis snapshot cannot be written.", e);
+    }
+  }
 
-    List<Issue> issuesFromDb = issueDao.query(preparedQuery);
-    loadHistoryForIssueList(issuesFromDb);
-    loadVersionsForIssueList();
+  /**
+   * Hands all the Bugs present in the JIRA Issue Database to a consumer, with
+   * all information loaded. Only a batch of issues is kept in memory at a
+   * time, and the issue list of this DAO is not modified.
+   * 
+   * @param issueConsumer
+   *          Receives every issue.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public void streamAllBugs(Consumer<ExtendedIssue> issueConsumer) throws SQLException {
+    streamIssues(prepareBugsQuery(), issueConsumer);
   }
 
-  private void loadVersionsForIssueList() throws SQLException {
-    for (ExtendedIssue extendedIssue : this.issueList) {
-      String issueId = extendedIssue.getIssue().getId();
+  /**
+   * Hands the issues of a board to a consumer, in creation order and with all
+   * information loaded. Only a batch of issues is kept in memory at a time, and
+   * the issue list of this DAO is not modified.
+   * 
+   * @param boardId
+   *          Board identifier.
+   * @param onlyBugs
+   *          If true, only bugs are considered.
+   * @param issueConsumer
+   *          Receives every issue.
+   * @param reporters
+   *          If present, only issues from these reporters are considered.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public void streamBoardIssues(String boardId, boolean onlyBugs,
+      Consumer<ExtendedIssue> issueConsumer, Object... reporters) throws SQLException {
+    streamIssues(prepareBoardQuery(boardId, onlyBugs, reporters), issueConsumer);
+  }
 
-      List<Version> versionList = new ArrayList<>();
-      List<FixVersionPerIssue> fixVersions = fixVersionDao.queryForEq("issueId", issueId);
-      for (FixVersionPerIssue fixVersion : fixVersions) {
-        versionList.add(versionDao.queryForId(fixVersion.getVersion().getId()));
+  private void streamIssues(PreparedQuery<Issue> preparedQuery,
+      Consumer<ExtendedIssue> issueConsumer) throws SQLException {
+    CloseableIterator<Issue> issueIterator = issueDao.iterator(preparedQuery);
+    List<Issue> issueBatch = new ArrayList<>(STREAM_BATCH_SIZE);
+
+    try {
+      while (issueIterator.hasNext()) {
+        issueBatch.add(issueIterator.next());
+
+        if (issueBatch.size() >= STREAM_BATCH_SIZE) {
+          consumeBatch(issueBatch, issueConsumer);
+          issueBatch.clear();
+        }
       }
-      extendedIssue.getIssue().setFixVersions(versionList.toArray(new Version[versionList.size()]));
 
-      versionList.clear();
-      List<VersionPerIssue> affectedVersions = affectedVersionDao.queryForEq("issueId", issueId);
-      for (VersionPerIssue affectedVersion : affectedVersions) {
-        versionList.add(versionDao.queryForId(affectedVersion.getVersion().getId()));
+      consumeBatch(issueBatch, issueConsumer);
+    } finally {
+      issueIterator.closeQuietly();
+    }
+  }
+
+  private void consumeBatch(List<Issue> issueBatch, Consumer<ExtendedIssue> issueConsumer)
+      throws SQLException {
+    if (issueBatch.isEmpty()) {
+      return;
+    }
+
+    for (ExtendedIssue extendedIssue : extendIssues(issueBatch)) {
+      issueConsumer.accept(extendedIssue);
+    }
+  }
+
+  private List<ExtendedIssue> extendIssues(List<Issue> issues) throws SQLException {
+    if (analysisOnly) {
+      if (analysisDao.isTableExists()) {
+        return extendFromAnalyses(issues);
       }
 
-      extendedIssue.getIssue().setVersions(versionList.toArray(new Version[versionList.size()]));
+      logger.warning("No analysis attributes were stored at extraction time. "
+          + "Loading change logs and versions.");
+    }
+
+    historyLoader.loadChangeLogs(issues);
 
-      String projectId = extendedIssue.getIssue().getProject().getId();
-      List<Version> projectVersions = versionDao.queryForEq("projectId", projectId);
-      extendedIssue.setProjectVersions(projectVersions);
+    List<ExtendedIssue> extendedIssues = new ArrayList<>(issues.size());
+    for (Issue issue : issues) {
+      extendedIssues.add(new ExtendedIssue(issue));
     }
+    versionRepository.loadVersions(extendedIssues);
+
+    return extendedIssues;
   }
 
-  private void loadHistoryForIssueList(List<Issue> issuesFromDb) throws SQLException {
+  private List<ExtendedIssue> extendFromAnalyses(List<Issue> issues) throws SQLException {
+    List<String> issueIds = new ArrayList<>(issues.size());
+    for (Issue issue : issues) {
+      issueIds.add(issue.getId());
+    }
+
+    Map<String, IssueAnalysis> analysesPerIssue = new HashMap<>();
+    for (IssueAnalysis analysis : BulkQueries.queryForIn(analysisDao, "issueId", issueIds)) {
+      analysesPerIssue.put(analysis.getIssueId(), analysis);
+    }
+
+    List<Issue> issuesWithoutAnalysis = new ArrayList<>();
+    for (Issue issue : issues) {
+      if (!analysesPerIssue.containsKey(issue.getId())) {
+        issuesWithoutAnalysis.add(issue);
+      }
+    }
 
-    for (Issue issue : issuesFromDb) {
-      issue.setChangeLog(new ResponseList<History>());
+    if (!issuesWithoutAnalysis.isEmpty()) {
+      logger.fine(issuesWithoutAnalysis.size() + " issues have no analysis attributes. "
+          + "Loading their change logs and versions.");
+      historyLoader.loadChangeLogs(issuesWithoutAnalysis);
+    }
 
-      List<History> historyList = historyDao.queryForEq("issueId", issue.getId());
+    List<ExtendedIssue> extendedIssues = new ArrayList<>(issues.size());
+    for (Issue issue : issues) {
+      IssueAnalysis analysis = analysesPerIssue.get(issue.getId());
 
-      for (History history : historyList) {
-        List<ChangeLogItem> changeList = changeLogItemDao.queryForEq("historyId", history.getId());
-        history.setItems(changeList.toArray(new ChangeLogItem[changeList.size()]));
+      if (analysis != null) {
+        issue.setChangeLog(new ResponseList<History>());
+        issue.getChangeLog().setValues(new History[0]);
+        extendedIssues.add(new ExtendedIssue(issue, analysis));
+      } else {
+        extendedIssues.add(new ExtendedIssue(issue));
       }
+    }
+
+    // The stored releases to fix are kept, but the earliest versions and their
+    // indexes are still read from the versions.
+    versionRepository.loadVersions(extendedIssues);
+
+    return extendedIssues;
+  }
 
-      issue.getChangeLog().setValues(historyList.toArray(new History[historyList.size()]));
-      this.issueList.add(new ExtendedIssue(issue));
+  private PreparedQuery<Issue> prepareBugsQuery() throws SQLException {
+    QueryBuilder<Issue, String> queryBuilder = issueDao.queryBuilder();
+    Where<Issue, String> whereClause = queryBuilder.where();
+    whereClause.eq("issueTypeId", BUG_ISSUE_TYPE);
+    return queryBuilder.prepare();
+  }
+
+  private PreparedQuery<Issue> prepareBoardQuery(String boardId, boolean onlyBugs,
+      Object... reporters) throws SQLException {
+    QueryBuilder<Issue, String> queryBuilder = issueDao.queryBuilder();
+    Where<Issue, String> whereClause = queryBuilder.where();
+
+    whereClause.eq("boardId", boardId);
+
+    boolean filterByReporters = reporters != null && reporters.length > 0;
+    if (onlyBugs || filterByReporters) {
+      whereClause.and();
     }
+
+    if (filterByReporters) {
+      whereClause.in("reporterId", reporters);
+    }
+    if (onlyBugs) {
+      whereClause.eq("issueTypeId", BUG_ISSUE_TYPE);
+    }
+
+    queryBuilder.orderBy("created", true);
+    return queryBuilder.prepare();
+  }
+
+  /**
+   * Sets the time frame granularities the issues are grouped at, so a single
+   * load can be organized per week, month or quarter without further passes.
+   * 
+   * @param timeFrames
+   *          Time frame granularities.
+   */
+  public void setTimeFrames(TimeFrame... timeFrames) {
+    this.timeFrames = timeFrames;
+    this.groupingIndex = null;
+  }
+
+  /**
+   * Returns the grouping index of the issues loaded. It is built on first use,
+   * and again after every load, when issues are added to or removed from the
+   * list, or when project versions are set on any issue.
+   * 
+   * @return Grouping index.
+   */
+  public IssueGroupingIndex getGroupingIndex() {
+    long versionChanges = ExtendedIssue.getVersionChangeCount();
+    if (groupingIndex == null || groupingIndex.size() != issueList.size()
+        || groupingVersionChanges != versionChanges) {
+      long start = System.nanoTime();
+      groupingIndex = new IssueGroupingIndex(issueList, timeFrames);
+      groupingVersionChanges = versionChanges;
+      logger.fine("Grouping index built for " + issueList.size() + " issues in "
+          + Durations.toSeconds(System.nanoTime() - start) + " seconds.");
+    }
+
+    return groupingIndex;
   }
 
   /**
@@ -159,16 +420,7 @@ public class JiraIssueListDao {
    * @return Map of per-board lists of issues.
    */
   public MultiValuedMap<String, ExtendedIssue> organizeInBoards() {
-    MultiValuedMap<String, ExtendedIssue> issuesPerBoard = MultiMapUtils.newListValuedHashMap();
-    for (ExtendedIssue extendedIssue : issueList) {
-      String boardKey = extendedIssue.getIssue().getBoardId();
-      if (boardKey.length() == 1) {
-        boardKey = "0" + boardKey;
-      }
-      issuesPerBoard.put(BOARD_KEY_PREFFIX + boardKey, extendedIssue);
-    }
-
-    return issuesPerBoard;
+    return getGroupingIndex().organizeInBoards();
   }
 
   /**
@@ -178,13 +430,7 @@ public class JiraIssueListDao {
    * @return MultiValueMap, containing the buckets.
    */
   public MultiValuedMap<Version, ExtendedIssue> organizeInReleases() {
-    MultiValuedMap<Version, ExtendedIssue> issuesPerRelease = MultiMapUtils.newListValuedHashMap();
-
-    for (ExtendedIssue extendedIssue : issueList) {
-      Version closestRelease = extendedIssue.getClosestRelease();
-      issuesPerRelease.put(closestRelease, extendedIssue);
-    }
-    return issuesPerRelease;
+    return getGroupingIndex().organizeInReleases();
   }
 
   /**
@@ -195,67 +441,48 @@ public class JiraIssueListDao {
    * @return List of reporters.
    */
   public Set<ExtendedUser> getReporterCatalogPerBoard(String boardId) {
-    Set<ExtendedUser> reporterCatalog = new HashSet<>();
-    for (ExtendedIssue extendedIssue : issueList) {
-
-      if (boardId.equals(extendedIssue.getIssue().getBoardId())) {
-        boolean isAdded = reporterCatalog
-            .add(new ExtendedUser(extendedIssue.getIssue().getReporter()));
-
-        if (!isAdded) {
-          logger.fine(
-              "User " + extendedIssue.getIssue().getReporter().getName() + " is already there ");
-        }
-      }
-    }
-
-    return reporterCatalog;
+    return getGroupingIndex().getReporterCatalogPerBoard(boardId);
   }
 
   /**
-   * Organizes a list of issues according to a time frame.
+   * Organizes a list of issues according to a time frame. The granularity is
+   * taken from the jira.analysis.timeFrame system property, and it is a month
+   * by default.
    * 
    * @return A MultiValueMap, where the frame identified is the key.
    */
   public MultiValuedMap<String, ExtendedIssue> organizeInTimeFrames() {
-    MultiValuedMap<String, ExtendedIssue> issuesPerTimeFrame = MultiMapUtils.newListValuedHashMap();
+    return organizeInTimeFrames(DEFAULT_TIME_FRAME);
+  }
 
-    for (ExtendedIssue issue : issueList) {
-      String timeFrameKey = getTimeFrameKey(issue);
-      issuesPerTimeFrame.put(timeFrameKey, issue);
+  /**
+   * Organizes a list of issues according to a time frame granularity. If it is
+   * not one of the configured granularities, it is added to them.
+   * 
+   * @param timeFrame
+   *          Time frame granularity.
+   * @return A MultiValueMap, where the frame label is the key.
+   */
+  public MultiValuedMap<String, ExtendedIssue> organizeInTimeFrames(TimeFrame timeFrame) {
+    if (!getGroupingIndex().hasTimeFrame(timeFrame)) {
+      TimeFrame[] extendedTimeFrames = Arrays.copyOf(timeFrames, timeFrames.length + 1);
+      extendedTimeFrames[timeFrames.length] = timeFrame;
+      setTimeFrames(extendedTimeFrames);
     }
 
-    return issuesPerTimeFrame;
+    return getGroupingIndex().organizeInTimeFrames(timeFrame);
   }
 
   /**
-   * Generates a key for the map, based on the creation date.
+   * Generates a key for the map, based on the creation date and the default
+   * time frame granularity.
    * 
    * @param extendedIssue
    *          Issue
    * @return Key as String.
    */
   public static String getTimeFrameKey(ExtendedIssue extendedIssue) {
-    Date reportedDate = extendedIssue.getIssue().getCreated();
-    Calendar reportedDateAsCalendar = Calendar.getInstance();
-    reportedDateAsCalendar.setTime(reportedDate);
-
-    // Uncomment this in case of using Months as Time Frame
-    int timeFrameAsNumber = reportedDateAsCalendar.get(Calendar.MONTH) + 1;
-    String timeFramePrefix = "";
-
-    // Uncomment this in case using bi-months as Time Frame
-    // String timeFramePrefix = "B";
-    // int timeFrameAsNumber = reportedDateAsCalendar.get(Calendar.MONTH) / 2 +
-    // 1;
-
-    String timeFrameAsString = timeFramePrefix + timeFrameAsNumber;
-
-    if (timeFrameAsNumber < 10) {
-      timeFrameAsString = timeFramePrefix + "0" + timeFrameAsNumber;
-    }
-
-    return reportedDateAsCalendar.get(Calendar.YEAR) + "-" + timeFrameAsString;
+    return DEFAULT_TIME_FRAME.getLabel(extendedIssue.getIssue().getCreated());
   }
 
   public List<ExtendedIssue> getIssueList() {
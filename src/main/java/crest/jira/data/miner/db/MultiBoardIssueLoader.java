@@ -0,0 +1,229 @@
+package crest.jira.data.miner.db;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.support.ConnectionSource;
+
+import crest.jira.data.miner.config.ConfigurationProvider;
+import crest.jira.data.miner.report.model.ExtendedIssue;
+import crest.jira.data.retriever.model.Board;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class MultiBoardIssueLoader {
+
+  private static Logger logger = Logger.getLogger(MultiBoardIssueLoader.class.getName());
+
+  private static final int LOADING_THREADS = Integer.getInteger("jira.analysis.loadingThreads",
+      Runtime.getRuntime().availableProcessors());
+
+  private String databaseUrl;
+  private int threads;
+  private boolean onlyBugs;
+  private String[] changeLogFields = new String[0];
+
+  private AtomicLong boardLoadNanoseconds = new AtomicLong();
+
+  /**
+   * Loads several boards concurrently. Every thread has its own read-only
+   * connection to the database.
+   *
+   * @param databaseUrl
+   *          JDBC URL of the SQLite database.
+   * @param threads
+   *          Number of threads, and of connections.
+   */
+  public MultiBoardIssueLoader(String databaseUrl, int threads) {
+    this.databaseUrl = databaseUrl;
+    this.threads = threads;
+  }
+
+  /**
+   * Loads all the bugs of every board on the database, and reports the time
+   * gained through concurrency.
+   *
+   * @param args
+   *          Not used.
+   * @throws Exception
+   *           In case of SQL errors.
+   */
+  public static void main(String... args) throws Exception {
+    ConnectionSource connectionSource = new ConfigurationProvider().getConnectionSource();
+    String databaseUrl;
+    List<String> boardIds = new ArrayList<>();
+    try {
+      databaseUrl = SqliteConnectionProfile.resolveUrl(connectionSource);
+      Dao<Board, String> boardDao = DaoManager.createDao(connectionSource, Board.class);
+      for (Board board : boardDao.queryForAll()) {
+        boardIds.add(board.getId());
+      }
+    } finally {
+      connectionSource.close();
+    }
+
+    MultiBoardIssueLoader loader = new MultiBoardIssueLoader(databaseUrl, LOADING_THREADS);
+    loader.setOnlyBugs(true);
+    loader.setChangeLogFields(JiraIssueListDao.PRIORITY_FIELD);
+
+    List<ExtendedIssue> allIssues = merge(loader.loadBoards(boardIds));
+    logger.info("Issues loaded from all boards: " + allIssues.size());
+  }
+
+  public void setOnlyBugs(boolean onlyBugs) {
+    this.onlyBugs = onlyBugs;
+  }
+
+  public void setChangeLogFields(String... changeLogFields) {
+    this.changeLogFields = changeLogFields;
+  }
+
+  /**
+   * Loads the issues of a set of boards.
+   *
+   * @param boardIds
+   *          Board identifiers.
+   * @return The issues of every board, in the order of the identifiers
+   *         provided.
+   * @throws Exception
+   *           If the load of any board fails.
+   */
+  public Map<String, List<ExtendedIssue>> loadBoards(Collection<String> boardIds)
+      throws Exception {
+    int poolSize = Math.max(1, Math.min(threads, boardIds.size()));
+    final BlockingQueue<ConnectionSource> connectionSources = new ArrayBlockingQueue<>(poolSize);
+    // Sources taken by a task are not on the queue, so every source created is
+    // tracked separately to be closed.
+    List<ConnectionSource> createdSources = new ArrayList<>(poolSize);
+    ExecutorService executor = null;
+
+    boardLoadNanoseconds.set(0);
+    long start = System.nanoTime();
+    Map<String, List<ExtendedIssue>> issuesPerBoard = new LinkedHashMap<>();
+
+    try {
+      for (int index = 0; index < poolSize; index += 1) {
+        ConnectionSource connectionSource = SqliteConnectionProfile.ANALYSIS
+            .createConnectionSource(databaseUrl);
+        createdSources.add(connectionSource);
+        connectionSources.add(connectionSource);
+      }
+
+      executor = Executors.newFixedThreadPool(poolSize);
+      Map<String, Future<List<ExtendedIssue>>> results = new LinkedHashMap<>();
+
+      for (final String boardId : boardIds) {
+        results.put(boardId, executor.submit(new Callable<List<ExtendedIssue>>() {
+
+          public List<ExtendedIssue> call() throws Exception {
+            ConnectionSource connectionSource = connectionSources.take();
+            try {
+              return loadBoard(connectionSource, boardId);
+            } finally {
+              connectionSources.put(connectionSource);
+            }
+          }
+        }));
+      }
+      executor.shutdown();
+
+      for (Map.Entry<String, Future<List<ExtendedIssue>>> result : results.entrySet()) {
+        issuesPerBoard.put(result.getKey(), result.getValue().get());
+      }
+    } catch (ExecutionException e) {
+      throw new Exception("Board loading failed", e.getCause());
+    } finally {
+      try {
+        if (executor != null) {
+          // On a failure, the remaining boards are cancelled, and the sources
+          // are closed once no task uses them.
+          executor.shutdownNow();
+          executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+      } finally {
+        closeAll(createdSources);
+      }
+    }
+
+    double totalSeconds = Durations.toSeconds(System.nanoTime() - start);
+    double summedSeconds = Durations.toSeconds(boardLoadNanoseconds.get());
+    logger.info(boardIds.size() + " boards loaded on " + poolSize + " threads in "
+        + totalSeconds + " seconds. Sum of per-board load times: " + summedSeconds
+        + " seconds (speed-up: " + (totalSeconds > 0 ? summedSeconds / totalSeconds : 0)
+        + ").");
+
+    return issuesPerBoard;
+  }
+
+  private void closeAll(List<ConnectionSource> connectionSources) {
+    for (ConnectionSource connectionSource : connectionSources) {
+      try {
+        connectionSource.close();
+      } catch (SQLException e) {
+        logger.log(Level.WARNING, "Cannot close a connection source to " + databaseUrl, e);
+      }
+    }
+  }
+
+  private List<ExtendedIssue> loadBoard(ConnectionSource connectionSource, String boardId)
+      throws SQLException {
+    long start = System.nanoTime();
+
+    JiraIssueListDao issueListDao = new JiraIssueListDao(connectionSource);
+    issueListDao.setChangeLogFields(changeLogFields);
+    issueListDao.loadBoardIssues(boardId, onlyBugs);
+
+    long loadNanoseconds = System.nanoTime() - start;
+    boardLoadNanoseconds.addAndGet(loadNanoseconds);
+    logger.fine("Board " + boardId + ": " + issueListDao.getIssueList().size()
+        + " issues loaded in " + Durations.toSeconds(loadNanoseconds) + " seconds.");
+
+    return issueListDao.getIssueList();
+  }
+
+  /**
+   * Produces a single list with the issues of all boards.
+   *
+   * @param issuesPerBoard
+   *          Issues per board, as returned by the loader.
+   * @return All the issues, board after board.
+   */
+  public static List<ExtendedIssue> merge(Map<String, List<ExtendedIssue>> issuesPerBoard) {
+    List<ExtendedIssue> allIssues = new ArrayList<>();
+    for (List<ExtendedIssue> boardIssues : issuesPerBoard.values()) {
+      allIssues.addAll(boardIssues);
+    }
+
+    return allIssues;
+  }
+
+  /**
+   * Loads the issues of some boards, and merges them in a single list.
+   *
+   * @param boardIds
+   *          Board identifiers.
+   * @return All the issues, board after board.
+   * @throws Exception
+   *           If the load of any board fails.
+   */
+  public List<ExtendedIssue> loadMerged(String... boardIds) throws Exception {
+    return merge(loadBoards(Arrays.asList(boardIds)));
+  }
+
+}
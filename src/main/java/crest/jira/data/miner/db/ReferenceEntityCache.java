@@ -0,0 +1,106 @@
+package crest.jira.data.miner.db;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.support.ConnectionSource;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+public class ReferenceEntityCache {
+
+  private static Logger logger = Logger.getLogger(ReferenceEntityCache.class.getName());
+
+  private ConnectionSource connectionSource;
+  private Map<Class<?>, Set<Object>> writtenIdentifiers = new ConcurrentHashMap<>();
+  private Map<Class<?>, AtomicLong> skippedWrites = new ConcurrentHashMap<>();
+
+  /**
+   * Keeps track of the reference entities (priorities, users, statuses ...)
+   * already written during an extraction run, so each one is written once.
+   *
+   * @param connectionSource
+   *          Connection source, used to obtain the identifier of each entity.
+   */
+  public ReferenceEntityCache(ConnectionSource connectionSource) {
+    this.connectionSource = connectionSource;
+  }
+
+  /**
+   * Removes from a list the entities that were already written on this run,
+   * and registers the remaining ones as written.
+   *
+   * @param entities
+   *          List of entities, that can contain nulls and duplicates.
+   * @return Entities that still need to be written.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public <T> List<T> filterWritten(List<T> entities) throws SQLException {
+    List<T> entitiesToWrite = new ArrayList<>();
+
+    for (T entity : entities) {
+      if (entity == null) {
+        continue;
+      }
+
+      Object identifier = extractId(entity);
+      if (identifier == null || getWrittenIdentifiers(entity.getClass()).add(identifier)) {
+        entitiesToWrite.add(entity);
+      } else {
+        getSkippedWrites(entity.getClass()).incrementAndGet();
+      }
+    }
+
+    return entitiesToWrite;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> Object extractId(T entity) throws SQLException {
+    Dao<T, ?> dao = DaoManager.createDao(connectionSource, (Class<T>) entity.getClass());
+    return dao.extractId(entity);
+  }
+
+  private Set<Object> getWrittenIdentifiers(Class<?> entityClass) {
+    Set<Object> identifiers = writtenIdentifiers.get(entityClass);
+    if (identifiers == null) {
+      writtenIdentifiers.putIfAbsent(entityClass,
+          Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>()));
+      identifiers = writtenIdentifiers.get(entityClass);
+    }
+
+    return identifiers;
+  }
+
+  private AtomicLong getSkippedWrites(Class<?> entityClass) {
+    AtomicLong counter = skippedWrites.get(entityClass);
+    if (counter == null) {
+      skippedWrites.putIfAbsent(entityClass, new AtomicLong());
+      counter = skippedWrites.get(entityClass);
+    }
+
+    return counter;
+  }
+
+  /**
+   * Logs, per entity type, the distinct entities written and the writes that
+   * were skipped.
+   */
+  public void logStatistics() {
+    for (Map.Entry<Class<?>, Set<Object>> entry : writtenIdentifiers.entrySet()) {
+      AtomicLong skipped = skippedWrites.get(entry.getKey());
+
+      logger.info(entry.getKey().getSimpleName() + ": " + entry.getValue().size()
+          + " distinct entities written, " + (skipped != null ? skipped.get() : 0)
+          + " redundant writes skipped.");
+    }
+  }
+
+}
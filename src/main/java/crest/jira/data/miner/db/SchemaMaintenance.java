@@ -0,0 +1,261 @@
+package crest.jira.data.miner.db;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.DatabaseTableConfig;
+
+import crest.jira.data.miner.config.ConfigurationProvider;
+import crest.jira.data.retriever.model.ChangeLogItem;
+import crest.jira.data.retriever.model.ClosedSprintPerIssue;
+import crest.jira.data.retriever.model.ComponentPerIssue;
+import crest.jira.data.retriever.model.FixVersionPerIssue;
+import crest.jira.data.retriever.model.History;
+import crest.jira.data.retriever.model.Issue;
+import crest.jira.data.retriever.model.SubtaskPerIssue;
+import crest.jira.data.retriever.model.Version;
+import crest.jira.data.retriever.model.VersionPerIssue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+public class SchemaMaintenance {
+
+  private static Logger logger = Logger.getLogger(SchemaMaintenance.class.getName());
+
+  private static final List<Class<?>> BOARD_LINK_TABLES = Arrays.<Class<?>>asList(
+      ChangeLogItem.class, ComponentPerIssue.class, SubtaskPerIssue.class,
+      FixVersionPerIssue.class, VersionPerIssue.class, ClosedSprintPerIssue.class);
+
+  private static final List<IndexDefinition> INDEXES = Arrays.asList(
+      // Deletes on a full extraction.
+      new IndexDefinition(ChangeLogItem.class, "boardId"),
+      new IndexDefinition(ComponentPerIssue.class, "boardId"),
+      new IndexDefinition(SubtaskPerIssue.class, "boardId"),
+      new IndexDefinition(FixVersionPerIssue.class, "boardId"),
+      new IndexDefinition(VersionPerIssue.class, "boardId"),
+      new IndexDefinition(ClosedSprintPerIssue.class, "boardId"),
+      // Deletes on an incremental extraction, and loading for analysis.
+      new IndexDefinition(ChangeLogItem.class, "historyId"),
+      new IndexDefinition(ComponentPerIssue.class, "issueId"),
+      new IndexDefinition(SubtaskPerIssue.class, "issueId"),
+      new IndexDefinition(FixVersionPerIssue.class, "issueId"),
+      new IndexDefinition(VersionPerIssue.class, "issueId"),
+      new IndexDefinition(ClosedSprintPerIssue.class, "issueId"),
+      new IndexDefinition(History.class, "issueId"),
+      new IndexDefinition(Version.class, "projectId"),
+      // Change log loading restricted to some fields.
+      new IndexDefinition(ChangeLogItem.class, "field", "historyId"),
+      new IndexDefinition(Issue.class, "boardId", "created"),
+      new IndexDefinition(Issue.class, "issueTypeId"));
+
+  private ConnectionSource connectionSource;
+
+  /**
+   * Creates the secondary indexes needed by the extraction and analysis access
+   * paths. The entity classes come from the retriever library, so the indexes
+   * are not declared on their fields but created here.
+   *
+   * @param connectionSource
+   *          Connection source.
+   */
+  public SchemaMaintenance(ConnectionSource connectionSource) {
+    this.connectionSource = connectionSource;
+  }
+
+  /**
+   * Analyzes the access paths of a board before and after creating the
+   * indexes. The first measurement may include the cost of a cold page cache.
+   *
+   * @param args
+   *          The board to use for the timing report.
+   * @throws Exception
+   *           In case of SQL errors.
+   */
+  public static void main(String... args) throws Exception {
+    if (args.length == 0) {
+      throw new IllegalArgumentException("Usage: SchemaMaintenance <boardId>");
+    }
+
+    String boardId = args[0];
+    ConnectionSource connectionSource = new ConfigurationProvider().getConnectionSource();
+    SchemaMaintenance schemaMaintenance = new SchemaMaintenance(connectionSource);
+
+    schemaMaintenance.reportAccessPaths(boardId, "Before indexing");
+    schemaMaintenance.ensureIndexes();
+    schemaMaintenance.reportAccessPaths(boardId, "After indexing");
+  }
+
+  /**
+   * Creates the missing indexes, and verifies they are present afterwards.
+   * Tables that do not exist yet are skipped.
+   *
+   * @return Number of indexes created.
+   * @throws SQLException
+   *           In case of SQL errors, or if an index cannot be verified.
+   */
+  public int ensureIndexes() throws SQLException {
+    int indexesCreated = 0;
+    int indexesFound = 0;
+
+    for (IndexDefinition indexDefinition : INDEXES) {
+      Dao<?, ?> dao = DaoManager.createDao(connectionSource, indexDefinition.entityClass);
+      String tableName = indexDefinition.getTableName();
+
+      if (dao.queryRaw("PRAGMA table_info('" + tableName + "')").getResults().isEmpty()) {
+        logger.fine("Table " + tableName + " does not exist yet. Skipping " + indexDefinition);
+        continue;
+      }
+
+      String existingIndex = findCoveringIndex(dao, indexDefinition);
+      if (existingIndex != null) {
+        logger.fine(indexDefinition + " is covered by " + existingIndex);
+        indexesFound += 1;
+        continue;
+      }
+
+      long start = System.nanoTime();
+      dao.executeRaw(indexDefinition.getCreateStatement());
+      if (findCoveringIndex(dao, indexDefinition) == null) {
+        throw new SQLException("Cannot verify " + indexDefinition + " after creating it.");
+      }
+
+      logger.info("Created " + indexDefinition + " in "
+          + Durations.toSeconds(System.nanoTime() - start) + " seconds.");
+      indexesCreated += 1;
+    }
+
+    if (indexesCreated > 0) {
+      // Lets the query planner know about the new indexes.
+      DaoManager.createDao(connectionSource, Issue.class).executeRaw("ANALYZE");
+    }
+
+    logger.info("Schema maintenance: " + indexesFound + " indexes found, " + indexesCreated
+        + " created.");
+    return indexesCreated;
+  }
+
+  private static String findCoveringIndex(Dao<?, ?> dao, IndexDefinition indexDefinition)
+      throws SQLException {
+    List<String[]> indexes = dao
+        .queryRaw("PRAGMA index_list('" + indexDefinition.getTableName() + "')").getResults();
+
+    for (String[] index : indexes) {
+      String indexName = index[1];
+      List<String[]> indexColumns = dao.queryRaw("PRAGMA index_info('" + indexName + "')")
+          .getResults();
+
+      if (isPrefix(indexDefinition.columns, indexColumns)) {
+        return indexName;
+      }
+    }
+
+    return null;
+  }
+
+  private static boolean isPrefix(String[] columns, List<String[]> indexColumns) {
+    if (indexColumns.size() < columns.length) {
+      return false;
+    }
+
+    for (int position = 0; position < columns.length; position += 1) {
+      if (!columns[position].equalsIgnoreCase(indexColumns.get(position)[2])) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Logs the time needed by the access paths of the delete and load phases for
+   * a board. The deletes of a full extraction are run inside a transaction
+   * that is rolled back afterwards, so the board data is kept.
+   *
+   * @param boardId
+   *          Board identifier.
+   * @param label
+   *          Label for the report.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public void reportAccessPaths(String boardId, String label) throws SQLException {
+    long deleteNanoseconds = 0;
+    long rowsDeleted = 0;
+
+    DatabaseConnection databaseConnection = connectionSource.getReadWriteConnection();
+    Connection connection = SqliteConnectionProfile.getJdbcConnection(databaseConnection);
+    boolean wasAutoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+
+    try {
+      for (Class<?> entityClass : BOARD_LINK_TABLES) {
+        String tableName = DatabaseTableConfig.extractTableName(entityClass);
+
+        try (PreparedStatement statement = connection
+            .prepareStatement("DELETE FROM \"" + tableName + "\" WHERE \"boardId\" = ?")) {
+          statement.setString(1, boardId);
+
+          long start = System.nanoTime();
+          rowsDeleted += statement.executeUpdate();
+          deleteNanoseconds += System.nanoTime() - start;
+        }
+      }
+    } finally {
+      connection.rollback();
+      connection.setAutoCommit(wasAutoCommit);
+      connectionSource.releaseConnection(databaseConnection);
+    }
+
+    long start = System.nanoTime();
+    JiraIssueListDao issueListDao = new JiraIssueListDao(connectionSource);
+    issueListDao.loadBoardIssues(boardId, false);
+    long loadNanoseconds = System.nanoTime() - start;
+
+    logger.info(label + ". Delete phase for board " + boardId + ": " + rowsDeleted
+        + " rows deleted, and rolled back, in " + Durations.toSeconds(deleteNanoseconds)
+        + " seconds. Load phase: " + issueListDao.getIssueList().size() + " issues loaded in "
+        + Durations.toSeconds(loadNanoseconds) + " seconds.");
+  }
+
+  private static class IndexDefinition {
+
+    private Class<?> entityClass;
+    private String[] columns;
+
+    public IndexDefinition(Class<?> entityClass, String... columns) {
+      this.entityClass = entityClass;
+      this.columns = columns;
+    }
+
+    public String getTableName() {
+      return DatabaseTableConfig.extractTableName(entityClass);
+    }
+
+    public String getIndexName() {
+      return "idx_" + getTableName() + "_" + String.join("_", columns);
+    }
+
+    public String getCreateStatement() {
+      List<String> quotedColumns = new ArrayList<>();
+      for (String column : columns) {
+        quotedColumns.add("\"" + column + "\"");
+      }
+
+      return "CREATE INDEX IF NOT EXISTS \"" + getIndexName() + "\" ON \"" + getTableName()
+          + "\" (" + String.join(", ", quotedColumns) + ")";
+    }
+
+    @Override
+    public String toString() {
+      return "index on " + getTableName() + Arrays.toString(columns);
+    }
+  }
+
+}
@@ -0,0 +1,201 @@
+package crest.jira.data.miner.db;
+
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+public enum SqliteConnectionProfile {
+
+  /**
+   * The settings of the SQLite driver, untouched.
+   */
+  DEFAULT,
+
+  /**
+   * Write-heavy workload: Write-ahead log, fewer fsync calls and a large page
+   * cache.
+   */
+  EXTRACTION("journal_mode=WAL", "synchronous=NORMAL", "cache_size=-" + Settings.CACHE_SIZE_KB),
+
+  /**
+   * Read-mostly workload: Memory-mapped reads, no writes allowed and temporary
+   * structures in memory.
+   */
+  ANALYSIS("mmap_size=" + Settings.MMAP_SIZE, "query_only=1", "temp_store=MEMORY",
+      "cache_size=-" + Settings.CACHE_SIZE_KB);
+
+  private static Logger logger = Logger.getLogger(SqliteConnectionProfile.class.getName());
+
+  public static final String PROFILE_PROPERTY = "jira.sqlite.profile";
+
+  private static final List<String> REPORTED_PRAGMAS = Arrays.asList("journal_mode",
+      "synchronous", "cache_size", "page_size", "mmap_size", "query_only", "temp_store");
+
+  private List<String> pragmas;
+
+  private SqliteConnectionProfile(String... pragmas) {
+    this.pragmas = Arrays.asList(pragmas);
+  }
+
+  /**
+   * Obtains the profile defined in the jira.sqlite.profile system property.
+   *
+   * @param defaultProfile
+   *          Profile to use if the property is not defined.
+   * @return The profile.
+   */
+  public static SqliteConnectionProfile fromSystemProperties(
+      SqliteConnectionProfile defaultProfile) {
+    String profileAsString = System.getProperty(PROFILE_PROPERTY);
+    if (profileAsString == null || profileAsString.isEmpty()) {
+      return defaultProfile;
+    }
+
+    return valueOf(profileAsString.toUpperCase());
+  }
+
+  public List<String> getPragmas() {
+    return pragmas;
+  }
+
+  /**
+   * Produces a connection source for the same database as the one provided,
+   * that applies this profile to every connection it opens. The connection
+   * source provided is closed.
+   *
+   * @param configuredSource
+   *          Connection source, as obtained from the configuration.
+   * @return A connection source with this profile.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public ConnectionSource createConnectionSource(ConnectionSource configuredSource)
+      throws SQLException {
+    if (pragmas.isEmpty()) {
+      return configuredSource;
+    }
+
+    String url = resolveUrl(configuredSource);
+    configuredSource.close();
+    return createConnectionSource(url);
+  }
+
+  /**
+   * Produces a connection source that applies this profile to every connection
+   * it opens.
+   *
+   * @param url
+   *          JDBC URL of the SQLite database.
+   * @return A connection source with this profile.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public ConnectionSource createConnectionSource(String url) throws SQLException {
+    logger.info("Using the " + this + " SQLite profile " + pragmas + " for " + url);
+    return new ProfiledConnectionSource(url, this);
+  }
+
+  /**
+   * Obtains the JDBC URL of the database behind a connection source.
+   *
+   * @param connectionSource
+   *          Connection source.
+   * @return JDBC URL.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public static String resolveUrl(ConnectionSource connectionSource) throws SQLException {
+    DatabaseConnection databaseConnection = connectionSource.getReadOnlyConnection();
+    try {
+      return getJdbcConnection(databaseConnection).getMetaData().getURL();
+    } finally {
+      connectionSource.releaseConnection(databaseConnection);
+    }
+  }
+
+  /**
+   * Reads the current value of the relevant pragmas on a connection source.
+   *
+   * @param connectionSource
+   *          Connection source.
+   * @return Pragma values, per pragma name.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public static Map<String, String> getEffectivePragmas(ConnectionSource connectionSource)
+      throws SQLException {
+    Map<String, String> effectivePragmas = new LinkedHashMap<>();
+    DatabaseConnection databaseConnection = connectionSource.getReadOnlyConnection();
+
+    try (Statement statement = getJdbcConnection(databaseConnection).createStatement()) {
+      for (String pragma : REPORTED_PRAGMAS) {
+        try (ResultSet resultSet = statement.executeQuery("PRAGMA " + pragma)) {
+          effectivePragmas.put(pragma, resultSet.next() ? resultSet.getString(1) : null);
+        }
+      }
+    } finally {
+      connectionSource.releaseConnection(databaseConnection);
+    }
+
+    logger.info("Effective SQLite pragmas: " + effectivePragmas);
+    return effectivePragmas;
+  }
+
+  private void apply(Connection connection) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      for (String pragma : pragmas) {
+        statement.execute("PRAGMA " + pragma);
+      }
+    }
+  }
+
+  static Connection getJdbcConnection(DatabaseConnection databaseConnection)
+      throws SQLException {
+    if (!(databaseConnection instanceof JdbcDatabaseConnection)) {
+      throw new SQLException("Not a JDBC connection: " + databaseConnection);
+    }
+
+    return ((JdbcDatabaseConnection) databaseConnection).getInternalConnection();
+  }
+
+  /**
+   * Holds the sizes used by the profiles, since the enum constants cannot refer
+   * to the static fields of the enum.
+   */
+  private static class Settings {
+
+    private static final int CACHE_SIZE_KB = Integer.getInteger("jira.sqlite.cacheSizeKb", 65536);
+    private static final long MMAP_SIZE = Long.getLong("jira.sqlite.mmapSize", 268435456L);
+  }
+
+  private static class ProfiledConnectionSource extends JdbcConnectionSource {
+
+    private SqliteConnectionProfile profile;
+
+    public ProfiledConnectionSource(String url, SqliteConnectionProfile profile)
+        throws SQLException {
+      super(url);
+      this.profile = profile;
+    }
+
+    @Override
+    protected DatabaseConnection makeConnection(com.j256.ormlite.logger.Logger logger)
+        throws SQLException {
+      DatabaseConnection databaseConnection = super.makeConnection(logger);
+      profile.apply(getJdbcConnection(databaseConnection));
+      return databaseConnection;
+    }
+  }
+
+}
@@ -0,0 +1,224 @@
+package crest.jira.data.miner.db;
+
+import com.j256.ormlite.dao.Dao;
+
+import crest.jira.data.miner.report.model.ExtendedIssue;
+import crest.jira.data.miner.report.model.VersionRankTable;
+import crest.jira.data.retriever.model.FixVersionPerIssue;
+import crest.jira.data.retriever.model.Issue;
+import crest.jira.data.retriever.model.Version;
+import crest.jira.data.retriever.model.VersionPerIssue;
+
+import org.apache.commons.collections4.ListValuedMap;
+import org.apache.commons.collections4.MultiMapUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+public class VersionRepository {
+
+  private static Logger logger = Logger.getLogger(VersionRepository.class.getName());
+
+  private Dao<Version, String> versionDao;
+  private Dao<FixVersionPerIssue, String> fixVersionDao;
+  private Dao<VersionPerIssue, String> affectedVersionDao;
+  private JdbcReadPath readPath;
+
+  private Map<String, Version> versionsById = new HashMap<>();
+  private Map<String, List<Version>> versionsPerProject = new HashMap<>();
+  private Map<String, VersionRankTable> rankTablesPerProject = new HashMap<>();
+
+  /**
+   * Loads versions and version links in bulk. Every version is read once, and
+   * the same instance is shared by all the issues and projects that refer to
+   * it.
+   * 
+   * @param versionDao
+   *          Version DAO.
+   * @param fixVersionDao
+   *          Fix version link DAO.
+   * @param affectedVersionDao
+   *          Affected version link DAO.
+   */
+  public VersionRepository(Dao<Version, String> versionDao,
+      Dao<FixVersionPerIssue, String> fixVersionDao,
+      Dao<VersionPerIssue, String> affectedVersionDao) {
+    this.versionDao = versionDao;
+    this.fixVersionDao = fixVersionDao;
+    this.affectedVersionDao = affectedVersionDao;
+  }
+
+  /**
+   * Reads versions and version links through hand-written statements instead
+   * of the DAOs.
+   * 
+   * @param readPath
+   *          JDBC read path. If null, the DAOs are used.
+   */
+  public void setReadPath(JdbcReadPath readPath) {
+    this.readPath = readPath;
+  }
+
+  /**
+   * Sets the fix versions, the affected versions and the project versions of
+   * every issue.
+   * 
+   * @param extendedIssues
+   *          Issues to complete.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public void loadVersions(List<ExtendedIssue> extendedIssues) throws SQLException {
+    List<String> issueIds = new ArrayList<>();
+    Set<String> projectIds = new LinkedHashSet<>();
+    for (ExtendedIssue extendedIssue : extendedIssues) {
+      issueIds.add(extendedIssue.getIssue().getId());
+      projectIds.add(extendedIssue.getIssue().getProject().getId());
+    }
+
+    ListValuedMap<String, String> fixVersionsPerIssue = MultiMapUtils.newListValuedHashMap();
+    ListValuedMap<String, String> affectedVersionsPerIssue = MultiMapUtils
+        .newListValuedHashMap();
+
+    if (readPath != null) {
+      for (String[] link : readPath.queryVersionLinks(FixVersionPerIssue.class, issueIds)) {
+        fixVersionsPerIssue.put(link[0], link[1]);
+      }
+      for (String[] link : readPath.queryVersionLinks(VersionPerIssue.class, issueIds)) {
+        affectedVersionsPerIssue.put(link[0], link[1]);
+      }
+    } else {
+      for (FixVersionPerIssue fixVersion : BulkQueries.queryForIn(fixVersionDao, "issueId",
+          issueIds)) {
+        fixVersionsPerIssue.put(fixVersion.getIssueId(), fixVersion.getVersion().getId());
+      }
+      for (VersionPerIssue affectedVersion : BulkQueries.queryForIn(affectedVersionDao,
+          "issueId", issueIds)) {
+        affectedVersionsPerIssue.put(affectedVersion.getIssueId(),
+            affectedVersion.getVersion().getId());
+      }
+    }
+
+    loadProjectVersions(projectIds);
+    loadVersionsById(fixVersionsPerIssue.values());
+    loadVersionsById(affectedVersionsPerIssue.values());
+
+    for (ExtendedIssue extendedIssue : extendedIssues) {
+      Issue issue = extendedIssue.getIssue();
+
+      issue.setFixVersions(getVersions(fixVersionsPerIssue.get(issue.getId())));
+      issue.setVersions(getVersions(affectedVersionsPerIssue.get(issue.getId())));
+      extendedIssue.setVersionRankTable(getVersionRankTable(issue.getProject().getId()));
+    }
+
+    logger.fine("Versions loaded for " + extendedIssues.size() + " issues. Versions cached: "
+        + versionsById.size() + ", projects cached: " + versionsPerProject.size());
+  }
+
+  /**
+   * Returns the versions of a project. They are read from the database only
+   * the first time.
+   * 
+   * @param projectId
+   *          Project identifier.
+   * @return Versions of the project.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public List<Version> getProjectVersions(String projectId) throws SQLException {
+    List<Version> projectVersions = versionsPerProject.get(projectId);
+    if (projectVersions == null) {
+      loadProjectVersions(Collections.singleton(projectId));
+      projectVersions = versionsPerProject.get(projectId);
+    }
+
+    return projectVersions;
+  }
+
+  /**
+   * Returns the versions of a project, sorted by release date and by name. The
+   * table is built only the first time, and shared by all the issues of the
+   * project.
+   * 
+   * @param projectId
+   *          Project identifier.
+   * @return Rank table of the project versions.
+   * @throws SQLException
+   *           In case of SQL errors.
+   */
+  public VersionRankTable getVersionRankTable(String projectId) throws SQLException {
+    VersionRankTable rankTable = rankTablesPerProject.get(projectId);
+    if (rankTable == null) {
+      rankTable = new VersionRankTable(getProjectVersions(projectId));
+      rankTablesPerProject.put(projectId, rankTable);
+    }
+
+    return rankTable;
+  }
+
+  private void loadProjectVersions(Collection<String> projectIds) throws SQLException {
+    List<String> missingProjectIds = new ArrayList<>();
+    for (String projectId : projectIds) {
+      if (!versionsPerProject.containsKey(projectId)) {
+        missingProjectIds.add(projectId);
+        versionsPerProject.put(projectId, new ArrayList<Version>());
+      }
+    }
+
+    for (Version version : queryVersions("projectId", missingProjectIds)) {
+      Version sharedVersion = getSharedInstance(version);
+      versionsPerProject.get(sharedVersion.getProjectId()).add(sharedVersion);
+    }
+  }
+
+  private void loadVersionsById(Collection<String> versionIds) throws SQLException {
+    List<String> missingVersionIds = new ArrayList<>();
+    for (String versionId : versionIds) {
+      if (!versionsById.containsKey(versionId)) {
+        missingVersionIds.add(versionId);
+      }
+    }
+
+    for (Version version : queryVersions("id", missingVersionIds)) {
+      getSharedInstance(version);
+    }
+  }
+
+  private List<Version> queryVersions(String fieldName, List<String> values)
+      throws SQLException {
+    if (readPath != null) {
+      return readPath.queryVersions(fieldName, values);
+    }
+
+    return BulkQueries.queryForIn(versionDao, fieldName, values);
+  }
+
+  private Version getSharedInstance(Version version) {
+    Version sharedVersion = versionsById.get(version.getId());
+    if (sharedVersion == null) {
+      versionsById.put(version.getId(), version);
+      sharedVersion = version;
+    }
+
+    return sharedVersion;
+  }
+
+  private Version[] getVersions(List<String> versionIds) {
+    Version[] versions = new Version[versionIds.size()];
+    for (int index = 0; index < versionIds.size(); index += 1) {
+      // As with queryForId, a link to a missing version produces a null.
+      versions[index] = versionsById.get(versionIds.get(index));
+    }
+
+    return versions;
+  }
+
+}
@@ -0,0 +1,63 @@
+package crest.jira.data.miner.db.model;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+import java.util.Date;
+
+@DatabaseTable(tableName = "BoardWatermark")
+public class BoardWatermark {
+
+  @DatabaseField(id = true)
+  private String boardId;
+
+  @DatabaseField
+  private Date lastExtraction;
+
+  @DatabaseField
+  private Date maxUpdated;
+
+  public BoardWatermark() {
+  }
+
+  /**
+   * Records up to which point the issues of a board were extracted.
+   * 
+   * @param boardId
+   *          Board identifier.
+   * @param lastExtraction
+   *          Moment when the extraction of the board started.
+   * @param maxUpdated
+   *          Most recent update date among the issues written.
+   */
+  public BoardWatermark(String boardId, Date lastExtraction, Date maxUpdated) {
+    this.boardId = boardId;
+    this.lastExtraction = lastExtraction;
+    this.maxUpdated = maxUpdated;
+  }
+
+  public String getBoardId() {
+    return boardId;
+  }
+
+  public void setBoardId(String boardId) {
+    this.boardId = boardId;
+  }
+
+  public Date getLastExtraction() {
+    return lastExtraction;
+  }
+
+  public void setLastExtraction(Date lastExtraction) {
+    this.lastExtraction = lastExtraction;
+  }
+
+  public Date getMaxUpdated() {
+    return maxUpdated;
+  }
+
+  public void setMaxUpdated(Date maxUpdated) {
+    this.maxUpdated = maxUpdated;
+  }
+
+}
@@ -0,0 +1,91 @@
+package crest.jira.data.miner.db.model;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+import java.util.Date;
+
+@DatabaseTable(tableName = "ExtractionCheckpoint")
+public class ExtractionCheckpoint {
+
+  @DatabaseField(id = true)
+  private String boardId;
+
+  @DatabaseField
+  private String lastIssueId;
+
+  @DatabaseField
+  private Date issuesRetrieved;
+
+  @DatabaseField
+  private boolean completed;
+
+  @DatabaseField
+  private Date lastCommit;
+
+  public ExtractionCheckpoint() {
+  }
+
+  /**
+   * Records the progress of the extraction of a board, on the current run.
+   * 
+   * @param boardId
+   *          Board identifier.
+   * @param lastIssueId
+   *          Greatest identifier among the issues committed, or null if none.
+   * @param issuesRetrieved
+   *          Moment when the committed issues were retrieved. If they were
+   *          retrieved by several attempts, the earliest one.
+   * @param completed
+   *          True if all the information of the board was committed.
+   */
+  public ExtractionCheckpoint(String boardId, String lastIssueId, Date issuesRetrieved,
+      boolean completed) {
+    this.boardId = boardId;
+    this.lastIssueId = lastIssueId;
+    this.issuesRetrieved = issuesRetrieved;
+    this.completed = completed;
+    this.lastCommit = new Date();
+  }
+
+  public String getBoardId() {
+    return boardId;
+  }
+
+  public void setBoardId(String boardId) {
+    this.boardId = boardId;
+  }
+
+  public String getLastIssueId() {
+    return lastIssueId;
+  }
+
+  public void setLastIssueId(String lastIssueId) {
+    this.lastIssueId = lastIssueId;
+  }
+
+  public Date getIssuesRetrieved() {
+    return issuesRetrieved;
+  }
+
+  public void setIssuesRetrieved(Date issuesRetrieved) {
+    this.issuesRetrieved = issuesRetrieved;
+  }
+
+  public boolean isCompleted() {
+    return completed;
+  }
+
+  public void setCompleted(boolean completed) {
+    this.completed = completed;
+  }
+
+  public Date getLastCommit() {
+    return lastCommit;
+  }
+
+  public void setLastCommit(Date lastCommit) {
+    this.lastCommit = lastCommit;
+  }
+
+}
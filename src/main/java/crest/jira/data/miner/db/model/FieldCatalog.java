@@ -0,0 +1,64 @@
+package crest.jira.data.miner.db.model;
+
+import com.j256.ormlite.field.DataType;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+import java.util.Date;
+
+@DatabaseTable(tableName = "FieldCatalog")
+public class FieldCatalog {
+
+  @DatabaseField(id = true)
+  private String catalogId;
+
+  @DatabaseField(dataType = DataType.LONG_STRING)
+  private String content;
+
+  @DatabaseField
+  private Date retrieved;
+
+  public FieldCatalog() {
+  }
+
+  /**
+   * A copy of the field catalog of the JIRA instance, as JSON.
+   * 
+   * @param catalogId
+   *          Catalog identifier.
+   * @param content
+   *          Fields, serialized as JSON.
+   * @param retrieved
+   *          When the fields were obtained from the server.
+   */
+  public FieldCatalog(String catalogId, String content, Date retrieved) {
+    this.catalogId = catalogId;
+    this.content = content;
+    this.retrieved = retrieved;
+  }
+
+  public String getCatalogId() {
+    return catalogId;
+  }
+
+  public void setCatalogId(String catalogId) {
+    this.catalogId = catalogId;
+  }
+
+  public String getContent() {
+    return content;
+  }
+
+  public void setContent(String content) {
+    this.content = content;
+  }
+
+  public Date getRetrieved() {
+    return retrieved;
+  }
+
+  public void setRetrieved(Date retrieved) {
+    this.retrieved = retrieved;
+  }
+
+}
@@ -0,0 +1,132 @@
+package crest.jira.data.miner.db.model;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+import crest.jira.data.miner.report.model.ExtendedIssue;
+
+@DatabaseTable(tableName = "IssueAnalysis")
+public class IssueAnalysis {
+
+  @DatabaseField(id = true)
+  private String issueId;
+
+  @DatabaseField
+  private String boardId;
+
+  @DatabaseField
+  private String originalPriorityId;
+
+  @DatabaseField
+  private String originalPriorityName;
+
+  @DatabaseField
+  private boolean priorityChanged;
+
+  @DatabaseField
+  private double resolutionTime;
+
+  @DatabaseField
+  private boolean resolved;
+
+  @DatabaseField
+  private boolean acceptedByDevTeam;
+
+  @DatabaseField
+  private Integer releasesToBeFixed;
+
+  public IssueAnalysis() {
+  }
+
+  /**
+   * Records the analysis attributes of an issue, so they are not calculated
+   * again on every load.
+   * 
+   * @param extendedIssue
+   *          Issue, with its change log and versions loaded.
+   */
+  public IssueAnalysis(ExtendedIssue extendedIssue) {
+    this.issueId = extendedIssue.getIssue().getId();
+    this.boardId = extendedIssue.getIssue().getBoardId();
+    this.originalPriorityId = extendedIssue.getOriginalPriority().getId();
+    this.originalPriorityName = extendedIssue.getOriginalPriority().getName();
+    this.priorityChanged = extendedIssue.isDoesPriorityChanged();
+    this.resolutionTime = extendedIssue.getResolutionTime();
+    this.resolved = extendedIssue.isResolved();
+    this.acceptedByDevTeam = extendedIssue.isAcceptedByDevTeam();
+    this.releasesToBeFixed = extendedIssue.getReleasesToBeFixed();
+  }
+
+  public String getIssueId() {
+    return issueId;
+  }
+
+  public void setIssueId(String issueId) {
+    this.issueId = issueId;
+  }
+
+  public String getBoardId() {
+    return boardId;
+  }
+
+  public void setBoardId(String boardId) {
+    this.boardId = boardId;
+  }
+
+  public String getOriginalPriorityId() {
+    return originalPriorityId;
+  }
+
+  public void setOriginalPriorityId(String originalPriorityId) {
+    this.originalPriorityId = originalPriorityId;
+  }
+
+  public String getOriginalPriorityName() {
+    return originalPriorityName;
+  }
+
+  public void setOriginalPriorityName(String originalPriorityName) {
+    this.originalPriorityName = originalPriorityName;
+  }
+
+  public boolean isPriorityChanged() {
+    return priorityChanged;
+  }
+
+  public void setPriorityChanged(boolean priorityChanged) {
+    this.priorityChanged = priorityChanged;
+  }
+
+  public double getResolutionTime() {
+    return resolutionTime;
+  }
+
+  public void setResolutionTime(double resolutionTime) {
+    this.resolutionTime = resolutionTime;
+  }
+
+  public boolean isResolved() {
+    return resolved;
+  }
+
+  public void setResolved(boolean resolved) {
+    this.resolved = resolved;
+  }
+
+  public boolean isAcceptedByDevTeam() {
+    return acceptedByDevTeam;
+  }
+
+  public void setAcceptedByDevTeam(boolean acceptedByDevTeam) {
+    this.acceptedByDevTeam = acceptedByDevTeam;
+  }
+
+  public Integer getReleasesToBeFixed() {
+    return releasesToBeFixed;
+  }
+
+  public void setReleasesToBeFixed(Integer releasesToBeFixed) {
+    this.releasesToBeFixed = releasesToBeFixed;
+  }
+
+}
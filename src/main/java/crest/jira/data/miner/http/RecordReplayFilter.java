@@ -0,0 +1,180 @@
+package crest.jira.data.miner.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+@Priority(RecordReplayFilter.PRIORITY)
+public class RecordReplayFilter implements ClientRequestFilter, ClientResponseFilter {
+
+  private static Logger logger = Logger.getLogger(RecordReplayFilter.class.getName());
+
+  public static final String MODE_PROPERTY = "jira.extractor.httpCache";
+  public static final String DIRECTORY_PROPERTY = "jira.extractor.httpCacheDirectory";
+  public static final String COMPRESSION_PROPERTY = "jira.extractor.httpCacheCompression";
+  // Request filters run in ascending priority, so requests are keyed after
+  // every filter that rewrites their URI, such as UpdatedSinceFilter.
+  public static final int PRIORITY = Priorities.USER + 1000;
+
+  private static final String REQUEST_KEY_PROPERTY = RecordReplayFilter.class.getName()
+      + ".requestKey";
+  private static final String DEFAULT_DIRECTORY = "http-cache";
+  private static final String PLAIN_EXTENSION = ".json";
+  private static final String COMPRESSED_EXTENSION = ".json.gz";
+  private static final int HTTP_OK = 200;
+  private static final int BUFFER_SIZE = 8192;
+
+  public enum Mode {
+    RECORD, REPLAY
+  }
+
+  private Mode mode;
+  private File directory;
+  private boolean compressed;
+
+  /**
+   * Stores the responses of the JIRA API on disk, or serves them from disk
+   * instead of contacting the server.
+   *
+   * @param mode
+   *          Record or Replay.
+   * @param directory
+   *          Directory for the recorded responses.
+   * @param compressed
+   *          If true, the responses are recorded using GZIP.
+   */
+  public RecordReplayFilter(Mode mode, File directory, boolean compressed) {
+    this.mode = mode;
+    this.directory = directory;
+    this.compressed = compressed;
+
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IllegalStateException("Cannot create directory " + directory);
+    }
+  }
+
+  /**
+   * Produces a filter according to the system properties. The mode is defined
+   * through jira.extractor.httpCache, and it can be "record" or "replay".
+   *
+   * @return The filter, or null if the property is not defined.
+   */
+  public static RecordReplayFilter fromSystemProperties() {
+    String modeAsString = System.getProperty(MODE_PROPERTY);
+    if (modeAsString == null || modeAsString.isEmpty()) {
+      return null;
+    }
+
+    Mode mode = Mode.valueOf(modeAsString.toUpperCase());
+    File directory = new File(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY));
+    boolean compressed = Boolean
+        .parseBoolean(System.getProperty(COMPRESSION_PROPERTY, Boolean.TRUE.toString()));
+
+    logger.info("HTTP responses on " + mode + " mode. Directory: " + directory.getAbsolutePath());
+    return new RecordReplayFilter(mode, directory, compressed);
+  }
+
+  @Override
+  public void filter(ClientRequestContext requestContext) throws IOException {
+    // Both modes key the request here, once its URI is final.
+    String requestKey = getRequestKey(requestContext);
+    if (mode != Mode.REPLAY) {
+      requestContext.setProperty(REQUEST_KEY_PROPERTY, requestKey);
+      return;
+    }
+
+    File compressedFile = new File(directory, requestKey + COMPRESSED_EXTENSION);
+    File plainFile = new File(directory, requestKey + PLAIN_EXTENSION);
+
+    byte[] content;
+    if (compressedFile.exists()) {
+      content = readFully(new GZIPInputStream(new FileInputStream(compressedFile)));
+    } else if (plainFile.exists()) {
+      content = readFully(new FileInputStream(plainFile));
+    } else {
+      throw new IOException("No recorded response for " + requestContext.getMethod() + " "
+          + requestContext.getUri());
+    }
+
+    requestContext.abortWith(Response.status(HTTP_OK).entity(content)
+        .type(MediaType.APPLICATION_JSON_TYPE).build());
+  }
+
+  @Override
+  public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext)
+      throws IOException {
+    if (mode != Mode.RECORD || responseContext.getStatus() != HTTP_OK
+        || !responseContext.hasEntity()) {
+      return;
+    }
+
+    byte[] content = readFully(responseContext.getEntityStream());
+    responseContext.setEntityStream(new ByteArrayInputStream(content));
+
+    String fileName = requestContext.getProperty(REQUEST_KEY_PROPERTY)
+        + (compressed ? COMPRESSED_EXTENSION : PLAIN_EXTENSION);
+    File temporaryFile = File.createTempFile("response", ".tmp", directory);
+
+    try (OutputStream outputStream = compressed
+        ? new GZIPOutputStream(new FileOutputStream(temporaryFile))
+        : new FileOutputStream(temporaryFile)) {
+      outputStream.write(content);
+    }
+
+    Files.move(temporaryFile.toPath(), new File(directory, fileName).toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static String getRequestKey(ClientRequestContext requestContext) {
+    String request = requestContext.getMethod() + " " + requestContext.getUri();
+
+    try {
+      MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+      byte[] digest = messageDigest.digest(request.getBytes(StandardCharsets.UTF_8));
+
+      StringBuilder requestKey = new StringBuilder();
+      for (byte digestByte : digest) {
+        requestKey.append(String.format("%02x", digestByte));
+      }
+      return requestKey.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static byte[] readFully(InputStream inputStream) throws IOException {
+    try (InputStream stream = inputStream) {
+      ByteArrayOutputStream content = new ByteArrayOutputStream();
+      byte[] buffer = new byte[BUFFER_SIZE];
+
+      int bytesRead;
+      while ((bytesRead = stream.read(buffer)) != -1) {
+        content.write(buffer, 0, bytesRead);
+      }
+      return content.toByteArray();
+    }
+  }
+
+}
@@ -0,0 +1,68 @@
+package crest.jira.data.miner.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.core.UriBuilder;
+
+@Priority(Priorities.USER)
+public class UpdatedSinceFilter implements ClientRequestFilter {
+
+  private static final Pattern BOARD_ISSUES_PATH = Pattern
+      .compile(".*/board/([^/]+)(/sprint/[^/]+)?/issue$");
+  private static final String JQL_PARAMETER = "jql";
+  private static final String JQL_DATE_PATTERN = "yyyy/MM/dd HH:mm";
+
+  private Map<String, Date> updatedSincePerBoard;
+  private long marginMillis;
+
+  /**
+   * Restricts the issue requests of a board, and of its sprints, to the issues
+   * updated since a date, through the jql parameter of the JIRA Agile API. JQL
+   * dates have minute precision and are read in the time zone of the JIRA
+   * user, so the condition starts some time before the date: The exact date
+   * still needs to be checked on the issues received.
+   *
+   * @param updatedSincePerBoard
+   *          Date per board identifier. It is read on every request, so it can
+   *          be filled after the filter is registered. Boards without a date
+   *          are not restricted.
+   * @param marginMillis
+   *          Milliseconds the condition starts before the date.
+   */
+  public UpdatedSinceFilter(Map<String, Date> updatedSincePerBoard, long marginMillis) {
+    this.updatedSincePerBoard = updatedSincePerBoard;
+    this.marginMillis = marginMillis;
+  }
+
+  @Override
+  public void filter(ClientRequestContext requestContext) throws IOException {
+    URI originalUri = requestContext.getUri();
+    Matcher matcher = BOARD_ISSUES_PATH.matcher(originalUri.getPath());
+    if (!matcher.matches()) {
+      return;
+    }
+
+    Date updatedSince = updatedSincePerBoard.get(matcher.group(1));
+    if (updatedSince == null) {
+      return;
+    }
+
+    String jql = "updated >= \""
+        + new SimpleDateFormat(JQL_DATE_PATTERN)
+            .format(new Date(updatedSince.getTime() - marginMillis))
+        + "\"";
+    requestContext
+        .setUri(UriBuilder.fromUri(originalUri).replaceQueryParam(JQL_PARAMETER, jql).build());
+  }
+
+}
@@ -3,6 +3,7 @@ package crest.jira.data.miner.report.model;
 import crest.jira.data.miner.csv.BaseCsvRecord;
 import crest.jira.data.miner.csv.JiraCsvConfiguration;
 import crest.jira.data.miner.db.JiraIssueListDao;
+import crest.jira.data.miner.db.model.IssueAnalysis;
 import crest.jira.data.retriever.model.ChangeLogItem;
 import crest.jira.data.retriever.model.History;
 import crest.jira.data.retriever.model.Issue;
@@ -20,9 +21,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 public class ExtendedIssue extends BaseCsvRecord {
@@ -33,6 +35,10 @@ public class ExtendedIssue extends BaseCsvRecord {
 
     private static Logger logger = Logger.getLogger(ExtendedIssue.class.getName());
 
+    // Closest releases depend on the project versions, so groupings of issues per release check this count to know
+    // when they are stale.
+    private static final AtomicLong versionChanges = new AtomicLong();
+
     public static final Priority NO_PRIORITY = new Priority("0", "No Priority");
     private static final Version NO_RELEASE = new Version("-1", "0.0.0", new Date(0L));
     private static final long MILISECONDS_IN_A_DATE = 24 * 60 * 60 * 1000;
@@ -43,10 +49,20 @@ public class ExtendedIssue extends BaseCsvRecord {
     private double resolutionTime = 0.0;
     private boolean isResolved = false;
     private boolean isAcceptedByDevTeam = false;
+    private boolean isReleasesToBeFixedStored = false;
+    private Integer storedReleasesToBeFixed;
 
-    private Set<Version> projectVersions;
+    private VersionRankTable versionRankTable;
     private ExtendedUser reporterMetrics;
 
+    private boolean areMetricsMemoized = true;
+    private Version earliestAffectedVersion;
+    private Version earliestFixVersion;
+    private boolean isReleasesToBeFixedComputed = false;
+    private Integer releasesToBeFixed;
+    private Boolean isInflated;
+    private Boolean isDefaultInflation;
+
     /**
      * Calculates additional fields that are necessary for analysis.
      *
@@ -60,12 +76,63 @@ public class ExtendedIssue extends BaseCsvRecord {
         loadResolutionProperties();
     }
 
+    /**
+     * Restores an issue whose additional fields were already calculated, so the change log is not needed.
+     *
+     * @param issue               Original issue.
+     * @param originalPriority    Priority at the moment of the report.
+     * @param doesPriorityChanged If the priority was changed after the report.
+     * @param resolutionTime      Days needed to resolve the issue.
+     * @param isResolved          If the issue has a resolution date.
+     * @param isAcceptedByDevTeam If the resolution is not a rejection.
+     */
+    public ExtendedIssue(Issue issue, Priority originalPriority, boolean doesPriorityChanged,
+                         double resolutionTime, boolean isResolved, boolean isAcceptedByDevTeam) {
+        this.issue = issue;
+        this.reporterMetrics = new ExtendedUser(this.issue.getReporter());
+
+        this.originalPriority = originalPriority;
+        this.doesPriorityChanged = doesPriorityChanged;
+        this.resolutionTime = resolutionTime;
+        this.isResolved = isResolved;
+        this.isAcceptedByDevTeam = isAcceptedByDevTeam;
+    }
+
+    /**
+     * Restores an issue from the analysis attributes calculated at extraction time, so the change log is not needed.
+     * The stored releases to fix are kept, but versions and project versions need to be set to get the closest release,
+     * the earliest versions or the CSV record.
+     *
+     * @param issue    Original issue.
+     * @param analysis Analysis attributes stored for the issue.
+     */
+    public ExtendedIssue(Issue issue, IssueAnalysis analysis) {
+        this(issue, new Priority(analysis.getOriginalPriorityId(), analysis.getOriginalPriorityName()),
+                analysis.isPriorityChanged(), analysis.getResolutionTime(), analysis.isResolved(),
+                analysis.isAcceptedByDevTeam());
+
+        if (NO_PRIORITY.getId().equals(analysis.getOriginalPriorityId())) {
+            this.originalPriority = NO_PRIORITY;
+        }
+
+        this.isReleasesToBeFixedStored = true;
+        this.storedReleasesToBeFixed = analysis.getReleasesToBeFixed();
+    }
+
     /**
      * Identifies an issue as a possible priority inflation.
      *
      * @return True if it is highly possible an inflation, false if it is not.
      */
     public boolean isInflated() {
+        if (!areMetricsMemoized || isInflated == null) {
+            isInflated = calculateIsInflated();
+        }
+
+        return isInflated;
+    }
+
+    private boolean calculateIsInflated() {
         // TODO(cgavidia): This rule needs to be improved!
 
         boolean fixIsDelayed = false;
@@ -105,6 +172,14 @@ public class ExtendedIssue extends BaseCsvRecord {
      * @return True if it is an inflated reports that should be a default. False otherwise.
      */
     public boolean isDefaultInflation() {
+        if (!areMetricsMemoized || isDefaultInflation == null) {
+            isDefaultInflation = calculateIsDefaultInflation();
+        }
+
+        return isDefaultInflation;
+    }
+
+    private boolean calculateIsDefaultInflation() {
         boolean isFixDelayedForSevere = isFixDelayed(MAXIMUM_RELEASES_FOR_SEVERE);
         boolean isFixDelayedForDefault = isFixDelayed(MAXIMUM_RELEASES_FOR_DEFAULT);
         return this.isReportedSevere() && !this.isFixRejected() &&
@@ -240,18 +315,68 @@ public class ExtendedIssue extends BaseCsvRecord {
      * @return Closest version.
      */
     public Version getClosestRelease() {
+        Version closestRelease = versionRankTable.getClosestRelease(this.getIssue().getCreated().getTime());
+        return closestRelease != null ? closestRelease : NO_RELEASE;
+    }
 
-        for (Version version : projectVersions) {
-            Date releaseDate = version.getReleaseDate();
-            if (releaseDate != null && releaseDate.compareTo(this.getIssue().getCreated()) > 0) {
-                return version;
+    /**
+     * Returns the closest release of many issues. Issues sharing a version rank table are sorted by report date and
+     * swept against the release dates once, instead of searching the releases of every issue.
+     *
+     * @param issues Issues, with project versions.
+     * @return Closest release of the issue on every position, or null for the issues without project versions.
+     */
+    public static Version[] getClosestReleases(List<ExtendedIssue> issues) {
+        Map<VersionRankTable, List<Integer>> positionsPerTable = new IdentityHashMap<>();
+        final long[] createdPerPosition = new long[issues.size()];
+        for (int position = 0; position < issues.size(); position += 1) {
+            VersionRankTable rankTable = issues.get(position).versionRankTable;
+            if (rankTable != null) {
+                createdPerPosition[position] = issues.get(position).getIssue().getCreated().getTime();
+
+                List<Integer> positions = positionsPerTable.get(rankTable);
+                if (positions == null) {
+                    positions = new ArrayList<>();
+                    positionsPerTable.put(rankTable, positions);
+                }
+                positions.add(position);
             }
         }
 
-        return NO_RELEASE;
+        Version[] closestReleases = new Version[issues.size()];
+        for (Map.Entry<VersionRankTable, List<Integer>> tablePositions : positionsPerTable.entrySet()) {
+            List<Integer> positions = tablePositions.getValue();
+            Collections.sort(positions, new Comparator<Integer>() {
+
+                public int compare(Integer thisPosition, Integer otherPosition) {
+                    return Long.compare(createdPerPosition[thisPosition], createdPerPosition[otherPosition]);
+                }
+            });
+
+            long[] sortedCreated = new long[positions.size()];
+            for (int index = 0; index < positions.size(); index += 1) {
+                sortedCreated[index] = createdPerPosition[positions.get(index)];
+            }
+
+            Version[] tableReleases = tablePositions.getKey().getClosestReleases(sortedCreated);
+            for (int index = 0; index < positions.size(); index += 1) {
+                closestReleases[positions.get(index)] = tableReleases[index] != null ? tableReleases[index]
+                        : NO_RELEASE;
+            }
+        }
+
+        return closestReleases;
     }
 
     private Version getEarliestAffectedAversion() {
+        if (!areMetricsMemoized || earliestAffectedVersion == null) {
+            earliestAffectedVersion = calculateEarliestAffectedVersion();
+        }
+
+        return earliestAffectedVersion;
+    }
+
+    private Version calculateEarliestAffectedVersion() {
         Version earliestAffectedVersion = NO_RELEASE;
         Version[] affectedVersionsArray = this.issue.getVersions();
 
@@ -266,6 +391,14 @@ public class ExtendedIssue extends BaseCsvRecord {
     }
 
     private Version getEarliestFixVersion() {
+        if (!areMetricsMemoized || earliestFixVersion == null) {
+            earliestFixVersion = calculateEarliestFixVersion();
+        }
+
+        return earliestFixVersion;
+    }
+
+    private Version calculateEarliestFixVersion() {
         Version earliestFixVersion = NO_RELEASE;
 
         Version[] fixVersionsArray = issue.getFixVersions();
@@ -280,19 +413,7 @@ public class ExtendedIssue extends BaseCsvRecord {
     }
 
     private Integer getVersionIndexByName(Version version) {
-        int index = 0;
-        List<Version> nameSortedVersions = new ArrayList<>(this.projectVersions);
-        Collections.sort(nameSortedVersions, new VersionNameComparator());
-
-        for (Version currentVersion : nameSortedVersions) {
-            if (currentVersion.equals(version)) {
-                return index;
-            }
-
-            index += 1;
-        }
-
-        return null;
+        return versionRankTable.getNameRank(version);
     }
 
     /**
@@ -301,6 +422,19 @@ public class ExtendedIssue extends BaseCsvRecord {
      * @return Number of releases, and -1 if no fix version was included.
      */
     public Integer getReleasesToBeFixed() {
+        if (isReleasesToBeFixedStored) {
+            return storedReleasesToBeFixed;
+        }
+
+        if (!areMetricsMemoized || !isReleasesToBeFixedComputed) {
+            releasesToBeFixed = calculateReleasesToBeFixed();
+            isReleasesToBeFixedComputed = true;
+        }
+
+        return releasesToBeFixed;
+    }
+
+    private Integer calculateReleasesToBeFixed() {
         Version earliestAffectedVersion = this.getEarliestAffectedAversion();
         Version earliestFixVersion = this.getEarliestFixVersion();
 
@@ -342,15 +476,69 @@ public class ExtendedIssue extends BaseCsvRecord {
      * @param projectVersions List of project versions.
      */
     public void setProjectVersions(List<Version> projectVersions) {
+        List<Version> joinedVersions = new ArrayList<>(projectVersions);
+        joinedVersions.addAll(Arrays.asList(issue.getVersions()));
+        joinedVersions.addAll(Arrays.asList(issue.getFixVersions()));
+
+        this.versionRankTable = new VersionRankTable(joinedVersions);
+        versionChanges.incrementAndGet();
+        invalidateMetrics();
+    }
 
+    /**
+     * Stores the versions for the Project related to this issue, already sorted. The table is shared with other issues
+     * of the project unless the versions of this issue are missing from it.
+     *
+     * @param projectTable Rank table of the project versions.
+     */
+    public void setVersionRankTable(VersionRankTable projectTable) {
         // It is possible that the Versions associated to the issue are not
         // retrieved from the Database query.
-        Set<Version> joinedSet = new TreeSet<>(new ReleaseDateComparator());
-        joinedSet.addAll(projectVersions);
-        joinedSet.addAll(Arrays.asList(issue.getVersions()));
-        joinedSet.addAll(Arrays.asList(issue.getFixVersions()));
+        this.versionRankTable = VersionRankTable.forIssue(projectTable, issue.getVersions(),
+                issue.getFixVersions());
+        versionChanges.incrementAndGet();
+        invalidateMetrics();
+    }
+
+    /**
+     * Returns how many times project versions were set, on any issue. It changes whenever the closest release of an
+     * issue may have changed.
+     *
+     * @return Number of version changes.
+     */
+    public static long getVersionChangeCount() {
+        return versionChanges.get();
+    }
+
+    /**
+     * Discards the derived metrics, like the releases to be fixed and the inflation flags, so they are calculated
+     * again on the next call. They depend on the versions of the issue, so this happens when project versions are set.
+     */
+    public void invalidateMetrics() {
+        this.earliestAffectedVersion = null;
+        this.earliestFixVersion = null;
+        this.isReleasesToBeFixedComputed = false;
+        this.releasesToBeFixed = null;
+        this.isInflated = null;
+        this.isDefaultInflation = null;
+    }
+
+    /**
+     * Indicates if the derived metrics are calculated once and kept, or on every call. Intended for comparisons.
+     *
+     * @param areMetricsMemoized True to calculate them once, the default.
+     */
+    public void setMetricsMemoized(boolean areMetricsMemoized) {
+        this.areMetricsMemoized = areMetricsMemoized;
+        invalidateMetrics();
+    }
+
+    public VersionRankTable getVersionRankTable() {
+        return versionRankTable;
+    }
 
-        this.projectVersions = joinedSet;
+    public boolean hasProjectVersions() {
+        return versionRankTable != null;
     }
 
     public ExtendedUser getReporterMetrics() {
@@ -0,0 +1,170 @@
+package crest.jira.data.miner.report.model;
+
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+public enum TimeFrame {
+
+    WEEK(53), MONTH(12), BI_MONTH(6), QUARTER(4), YEAR(1);
+
+    public static final String TIME_FRAME_PROPERTY = "jira.analysis.timeFrame";
+
+    private static Logger logger = Logger.getLogger(TimeFrame.class.getName());
+
+    private static final TimeZone TIME_ZONE = TimeZone.getDefault();
+    private static final long MILISECONDS_IN_A_DATE = 24 * 60 * 60 * 1000;
+    private static final int CACHED_YEARS = 150;
+    private static final int FIRST_CACHED_YEAR = 1970;
+
+    private final int framesPerYear;
+    private AtomicReferenceArray<String> labels;
+
+    private TimeFrame(int framesPerYear) {
+        this.framesPerYear = framesPerYear;
+        this.labels = new AtomicReferenceArray<>(CACHED_YEARS * framesPerYear);
+    }
+
+    /**
+     * Obtains the time frame defined in the jira.analysis.timeFrame system property.
+     *
+     * @return The time frame, or MONTH if the property is not defined or not valid.
+     */
+    public static TimeFrame fromSystemProperties() {
+        String timeFrameAsString = System.getProperty(TIME_FRAME_PROPERTY);
+        if (timeFrameAsString == null || timeFrameAsString.isEmpty()) {
+            return MONTH;
+        }
+
+        try {
+            return valueOf(timeFrameAsString.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warning("Unknown time frame " + timeFrameAsString + " on " + TIME_FRAME_PROPERTY
+                    + ". Using " + MONTH + " instead.");
+            return MONTH;
+        }
+    }
+
+    /**
+     * Returns the frame that contains a date, as a number that grows by one from a frame to the next one. Weeks start
+     * on Monday. Dates are interpreted in the default time zone, as Calendar does.
+     *
+     * @param epochMillis Date, in milliseconds since the epoch.
+     * @return Frame ordinal.
+     */
+    public int getOrdinal(long epochMillis) {
+        return getOrdinal(epochMillis, TIME_ZONE);
+    }
+
+    /**
+     * Returns the frame that contains a date, interpreted in a time zone.
+     *
+     * @param epochMillis Date, in milliseconds since the epoch.
+     * @param timeZone    Time zone.
+     * @return Frame ordinal.
+     */
+    public int getOrdinal(long epochMillis, TimeZone timeZone) {
+        long localMillis = epochMillis + timeZone.getOffset(epochMillis);
+        long epochDay = Math.floorDiv(localMillis, MILISECONDS_IN_A_DATE);
+
+        if (this == WEEK) {
+            // 1970-01-01 was a Thursday.
+            return (int) Math.floorDiv(epochDay + 3, 7);
+        }
+
+        return fromMonthIndex(getMonthIndex(epochDay));
+    }
+
+    private int fromMonthIndex(int monthIndex) {
+        return Math.floorDiv(monthIndex, 12 / framesPerYear);
+    }
+
+    /**
+     * Returns the label of a frame: 2016-W05, 2016-03, 2016-B02, 2016-Q1 or 2016. Labels of recent frames are built
+     * once and shared.
+     *
+     * @param ordinal Frame ordinal.
+     * @return Frame label.
+     */
+    public String getLabel(int ordinal) {
+        int cacheIndex = ordinal - getFirstCachedOrdinal();
+        if (cacheIndex < 0 || cacheIndex >= labels.length()) {
+            return buildLabel(ordinal);
+        }
+
+        String label = labels.get(cacheIndex);
+        if (label == null) {
+            label = buildLabel(ordinal).intern();
+            labels.set(cacheIndex, label);
+        }
+
+        return label;
+    }
+
+    /**
+     * Returns the label of the frame that contains a date.
+     *
+     * @param date Date.
+     * @return Frame label.
+     */
+    public String getLabel(Date date) {
+        return getLabel(getOrdinal(date.getTime()));
+    }
+
+    private int getFirstCachedOrdinal() {
+        if (this == WEEK) {
+            return 0;
+        }
+
+        return fromMonthIndex(FIRST_CACHED_YEAR * 12);
+    }
+
+    private String buildLabel(int ordinal) {
+        switch (this) {
+            case WEEK:
+                long thursday = ordinal * 7L;
+                int weekYear = Math.floorDiv(getMonthIndex(thursday), 12);
+                long week = (thursday - getEpochDay(weekYear, 1, 1)) / 7 + 1;
+                return weekYear + "-W" + (week < 10 ? "0" + week : week);
+            case MONTH:
+                int month = Math.floorMod(ordinal, 12) + 1;
+                return Math.floorDiv(ordinal, 12) + "-" + (month < 10 ? "0" + month : month);
+            case BI_MONTH:
+                return Math.floorDiv(ordinal, 6) + "-B0" + (Math.floorMod(ordinal, 6) + 1);
+            case QUARTER:
+                return Math.floorDiv(ordinal, 4) + "-Q" + (Math.floorMod(ordinal, 4) + 1);
+            default:
+                return String.valueOf(ordinal);
+        }
+    }
+
+    /**
+     * Converts a day since the epoch to year * 12 + month - 1, using the proleptic Gregorian calendar.
+     */
+    private static int getMonthIndex(long epochDay) {
+        long shiftedDay = epochDay + 719468;
+        long era = Math.floorDiv(shiftedDay, 146097);
+        long dayOfEra = shiftedDay - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) (year * 12 + month - 1);
+    }
+
+    /**
+     * Converts a date of the proleptic Gregorian calendar to a day since the epoch.
+     */
+    private static long getEpochDay(int year, int month, int day) {
+        long shiftedYear = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(shiftedYear, 400);
+        long yearOfEra = shiftedYear - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+}
@@ -0,0 +1,184 @@
+package crest.jira.data.miner.report.model;
+
+import crest.jira.data.retriever.model.Version;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+public final class VersionRankTable {
+
+    private final List<Version> versions;
+    private final TreeSet<Version> versionSet;
+    private final List<Version> releaseOrder;
+    private final Map<String, Integer> nameRanks;
+    private final Map<String, Integer> releaseRanks;
+    private final Version[] datedVersions;
+    private final long[] latestReleaseDates;
+
+    /**
+     * Sorts a set of versions once, by release date and by name, so the rank of a version is obtained without sorting
+     * again. As on the project versions of an issue, versions the ReleaseDateComparator considers equal are kept once.
+     * The table is immutable, so it can be shared by all the issues of a project. Ranks are looked up by version
+     * identifier, so copies of a version loaded separately get the same rank.
+     *
+     * @param versions Versions of a project.
+     */
+    public VersionRankTable(Collection<Version> versions) {
+        this.versions = new ArrayList<>(versions);
+        this.versionSet = new TreeSet<>(new ReleaseDateComparator());
+        this.versionSet.addAll(this.versions);
+        this.releaseOrder = Collections.unmodifiableList(new ArrayList<>(versionSet));
+
+        List<Version> nameOrder = new ArrayList<>(releaseOrder);
+        Collections.sort(nameOrder, new VersionNameComparator());
+
+        this.nameRanks = rank(nameOrder);
+        this.releaseRanks = rank(releaseOrder);
+
+        List<Version> versionsWithDate = new ArrayList<>();
+        for (Version version : releaseOrder) {
+            if (version.getReleaseDate() != null) {
+                versionsWithDate.add(version);
+            }
+        }
+
+        // Release dates grow along the release order, except for the versions with special names. Keeping the latest
+        // date seen so far gives an ascending array that still finds the first later version in that order.
+        this.datedVersions = versionsWithDate.toArray(new Version[versionsWithDate.size()]);
+        this.latestReleaseDates = new long[datedVersions.length];
+        long latestReleaseDate = Long.MIN_VALUE;
+        for (int index = 0; index < datedVersions.length; index += 1) {
+            latestReleaseDate = Math.max(latestReleaseDate, datedVersions[index].getReleaseDate().getTime());
+            latestReleaseDates[index] = latestReleaseDate;
+        }
+    }
+
+    private static Map<String, Integer> rank(List<Version> sortedVersions) {
+        Map<String, Integer> ranks = new HashMap<>();
+        for (int index = 0; index < sortedVersions.size(); index += 1) {
+            // The first match wins, as when scanning the sorted list.
+            ranks.putIfAbsent(sortedVersions.get(index).getId(), index);
+        }
+
+        return Collections.unmodifiableMap(ranks);
+    }
+
+    /**
+     * Produces the table for the versions of an issue: The project table itself when it already contains all the
+     * affected and fix versions of the issue, and a new table including them otherwise.
+     *
+     * @param projectTable     Table of the project versions.
+     * @param issueVersions    Affected versions of the issue.
+     * @param issueFixVersions Fix versions of the issue.
+     * @return A table with the project and issue versions.
+     */
+    public static VersionRankTable forIssue(VersionRankTable projectTable, Version[] issueVersions,
+                                            Version[] issueFixVersions) {
+        if (projectTable.contains(issueVersions) && projectTable.contains(issueFixVersions)) {
+            return projectTable;
+        }
+
+        // The comparator is not consistent for versions without release date, so the order they are added in matters.
+        // They are added as ExtendedIssue.setProjectVersions does.
+        List<Version> joinedVersions = new ArrayList<>(projectTable.versions);
+        Collections.addAll(joinedVersions, issueVersions);
+        Collections.addAll(joinedVersions, issueFixVersions);
+        return new VersionRankTable(joinedVersions);
+    }
+
+    private boolean contains(Version[] versions) {
+        for (Version version : versions) {
+            if (!versionSet.contains(version)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the position of a version when sorted by name.
+     *
+     * @param version Version.
+     * @return Position, or null if the version is not in the table.
+     */
+    public Integer getNameRank(Version version) {
+        return nameRanks.get(version.getId());
+    }
+
+    /**
+     * Returns the position of a version when sorted by release date.
+     *
+     * @param version Version.
+     * @return Position, or null if the version is not in the table.
+     */
+    public Integer getReleaseRank(Version version) {
+        return releaseRanks.get(version.getId());
+    }
+
+    /**
+     * Returns the first version, in release order, released after a date. It takes a binary search on the release
+     * dates.
+     *
+     * @param epochMillis Date, in milliseconds since the epoch.
+     * @return Closest version, or null if no version was released after the date.
+     */
+    public Version getClosestRelease(long epochMillis) {
+        int index = getFirstReleaseAfter(epochMillis);
+        return index < datedVersions.length ? datedVersions[index] : null;
+    }
+
+    /**
+     * Returns the closest version of many dates, in a single sweep over the release dates.
+     *
+     * @param sortedEpochMillis Dates, in milliseconds since the epoch, in ascending order.
+     * @return Closest version of every date, or null for the dates with no version released after them.
+     */
+    public Version[] getClosestReleases(long[] sortedEpochMillis) {
+        Version[] closestReleases = new Version[sortedEpochMillis.length];
+        int index = 0;
+        for (int position = 0; position < sortedEpochMillis.length; position += 1) {
+            while (index < datedVersions.length && latestReleaseDates[index] <= sortedEpochMillis[position]) {
+                index += 1;
+            }
+
+            closestReleases[position] = index < datedVersions.length ? datedVersions[index] : null;
+        }
+
+        return closestReleases;
+    }
+
+    private int getFirstReleaseAfter(long epochMillis) {
+        int low = 0;
+        int high = datedVersions.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (latestReleaseDates[middle] > epochMillis) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Returns the versions sorted by release date.
+     *
+     * @return Unmodifiable list of versions.
+     */
+    public List<Version> getReleaseOrder() {
+        return releaseOrder;
+    }
+
+    public int size() {
+        return releaseOrder.size();
+    }
+
+}
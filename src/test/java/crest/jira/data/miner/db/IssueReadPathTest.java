@@ -0,0 +1,323 @@
+package crest.jira.data.miner.db;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.support.ConnectionSource;
+
+import crest.jira.data.miner.benchmark.ExtractionBenchmark;
+import crest.jira.data.miner.benchmark.FakeJiraServer;
+import crest.jira.data.miner.report.model.ExtendedIssue;
+import crest.jira.data.miner.report.model.ReleaseDateComparator;
+import crest.jira.data.retriever.JiraApiConfiguration;
+import crest.jira.data.retriever.map.ResponseList;
+import crest.jira.data.retriever.model.ChangeLogItem;
+import crest.jira.data.retriever.model.FixVersionPerIssue;
+import crest.jira.data.retriever.model.History;
+import crest.jira.data.retriever.model.Issue;
+import crest.jira.data.retriever.model.Version;
+import crest.jira.data.retriever.model.VersionPerIssue;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compares the issues loaded with bulk ORMLite queries and with the JDBC read
+ * path against the per-issue queries they replaced. The database is written
+ * by an extraction from the fake JIRA server, plus project versions without
+ * release date and with the pre-4.0.0 and Future names.
+ */
+public class IssueReadPathTest extends TestCase {
+
+  private static final String[] BOARDS = { "1", "2" };
+  private static final int ISSUES_PER_BOARD = 40;
+  private static final int HISTORIES_PER_ISSUE = 5;
+  private static final int SPRINTS_PER_BOARD = 2;
+  private static final int VERSIONS_PER_BOARD = 6;
+  private static final String FIXTURE_USER = "test";
+
+  // The extractor keeps its field catalog cache across runs, so the fixture is
+  // extracted once and shared by all the test cases.
+  private static File databaseFile;
+
+  private ConnectionSource connectionSource;
+
+  /**
+   * Create the test case.
+   *
+   * @param testName
+   *          name of the test case
+   */
+  public IssueReadPathTest(String testName) {
+    super(testName);
+  }
+
+  /**
+   * Returns the suite.
+   *
+   * @return the suite of tests being tested.
+   */
+  public static Test suite() {
+    return new TestSuite(IssueReadPathTest.class);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    if (databaseFile == null) {
+      databaseFile = createFixture();
+    }
+
+    connectionSource = SqliteConnectionProfile.ANALYSIS
+        .createConnectionSource("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    connectionSource.close();
+  }
+
+  /**
+   * Complete change logs.
+   */
+  public void testReadPathsMatchPerIssueQueries() throws SQLException {
+    for (String boardId : BOARDS) {
+      List<ExtendedIssue> expectedIssues = loadPerIssue(boardId);
+      assertEquals(ISSUES_PER_BOARD, expectedIssues.size());
+
+      assertSameIssues(expectedIssues, loadInBulk(boardId, false));
+      assertSameIssues(expectedIssues, loadInBulk(boardId, true));
+    }
+  }
+
+  /**
+   * Change logs restricted to the priority changes.
+   */
+  public void testReadPathsMatchPerIssueQueriesOnWhitelistedFields() throws SQLException {
+    for (String boardId : BOARDS) {
+      List<ExtendedIssue> expectedIssues = loadPerIssue(boardId,
+          JiraIssueListDao.PRIORITY_FIELD);
+      assertEquals(ISSUES_PER_BOARD, expectedIssues.size());
+
+      assertSameIssues(expectedIssues,
+          loadInBulk(boardId, false, JiraIssueListDao.PRIORITY_FIELD));
+      assertSameIssues(expectedIssues,
+          loadInBulk(boardId, true, JiraIssueListDao.PRIORITY_FIELD));
+    }
+  }
+
+  private static File createFixture() throws Exception {
+    FakeJiraServer server = new FakeJiraServer(BOARDS.length, ISSUES_PER_BOARD,
+        HISTORIES_PER_ISSUE, SPRINTS_PER_BOARD, VERSIONS_PER_BOARD);
+    server.start();
+
+    File fixtureFile = File.createTempFile("read-path", ".db");
+    fixtureFile.deleteOnExit();
+    ConnectionSource fixtureSource = SqliteConnectionProfile.EXTRACTION
+        .createConnectionSource("jdbc:sqlite:" + fixtureFile.getAbsolutePath());
+
+    try {
+      ExtractionBenchmark.createTables(fixtureSource);
+      JiraDataExtractor.extract(fixtureSource, new JiraApiConfiguration(
+          server.getBaseUri().toString(), FIXTURE_USER, FIXTURE_USER));
+      addUndatedVersions(fixtureSource);
+    } finally {
+      fixtureSource.close();
+      server.stop();
+    }
+
+    return fixtureFile;
+  }
+
+  /**
+   * The fake server releases every version, so versions without release date
+   * are added to each project directly.
+   */
+  private static void addUndatedVersions(ConnectionSource fixtureSource) throws SQLException {
+    Dao<Version, String> versionDao = DaoManager.createDao(fixtureSource, Version.class);
+
+    Set<String> projectIds = new LinkedHashSet<>();
+    for (Version version : versionDao.queryForAll()) {
+      projectIds.add(version.getProjectId());
+    }
+
+    for (String projectId : projectIds) {
+      for (String name : Arrays.asList(ReleaseDateComparator.MINIMUM_VERSION, "1.99.0",
+          ReleaseDateComparator.MAXIMUM_VERSION)) {
+        Version version = new Version(projectId + "-" + name, name, null);
+        version.setProjectId(projectId);
+        versionDao.create(version);
+      }
+    }
+  }
+
+  private List<ExtendedIssue> loadInBulk(String boardId, boolean rawJdbcReads,
+      String... changeLogFields) throws SQLException {
+    JiraIssueListDao issueListDao = new JiraIssueListDao(connectionSource);
+    issueListDao.setRawJdbcReads(rawJdbcReads);
+    issueListDao.setChangeLogFields(changeLogFields);
+    issueListDao.loadBoardIssues(boardId, false);
+    return issueListDao.getIssueList();
+  }
+
+  /**
+   * Loads a board as JiraIssueListDao did before the bulk loads: One query per
+   * issue and per history for the change log, and one per version. With a
+   * field whitelist, the other items are dropped, and so are the histories
+   * left without items.
+   */
+  private List<ExtendedIssue> loadPerIssue(String boardId, String... changeLogFields)
+      throws SQLException {
+    Dao<Issue, String> issueDao = DaoManager.createDao(connectionSource, Issue.class);
+    Dao<History, String> historyDao = DaoManager.createDao(connectionSource, History.class);
+    Dao<ChangeLogItem, String> changeLogItemDao = DaoManager.createDao(connectionSource,
+        ChangeLogItem.class);
+    Dao<Version, String> versionDao = DaoManager.createDao(connectionSource, Version.class);
+    Dao<FixVersionPerIssue, String> fixVersionDao = DaoManager.createDao(connectionSource,
+        FixVersionPerIssue.class);
+    Dao<VersionPerIssue, String> affectedVersionDao = DaoManager.createDao(connectionSource,
+        VersionPerIssue.class);
+    List<String> fields = Arrays.asList(changeLogFields);
+
+    QueryBuilder<Issue, String> queryBuilder = issueDao.queryBuilder();
+    queryBuilder.where().eq("boardId", boardId);
+    queryBuilder.orderBy("created", true);
+
+    List<ExtendedIssue> extendedIssues = new ArrayList<>();
+    for (Issue issue : issueDao.query(queryBuilder.prepare())) {
+      List<History> historyList = new ArrayList<>();
+      for (History history : historyDao.queryForEq("issueId", issue.getId())) {
+        List<ChangeLogItem> changeList = new ArrayList<>();
+        for (ChangeLogItem changeLogItem : changeLogItemDao.queryForEq("historyId",
+            history.getId())) {
+          if (fields.isEmpty() || fields.contains(changeLogItem.getField())) {
+            changeList.add(changeLogItem);
+          }
+        }
+
+        if (fields.isEmpty() || !changeList.isEmpty()) {
+          history.setItems(changeList.toArray(new ChangeLogItem[changeList.size()]));
+          historyList.add(history);
+        }
+      }
+
+      issue.setChangeLog(new ResponseList<History>());
+      issue.getChangeLog().setValues(historyList.toArray(new History[historyList.size()]));
+      extendedIssues.add(new ExtendedIssue(issue));
+    }
+
+    for (ExtendedIssue extendedIssue : extendedIssues) {
+      Issue issue = extendedIssue.getIssue();
+
+      List<Version> versionList = new ArrayList<>();
+      for (FixVersionPerIssue fixVersion : fixVersionDao.queryForEq("issueId", issue.getId())) {
+        versionList.add(versionDao.queryForId(fixVersion.getVersion().getId()));
+      }
+      issue.setFixVersions(versionList.toArray(new Version[versionList.size()]));
+
+      versionList.clear();
+      for (VersionPerIssue affectedVersion : affectedVersionDao.queryForEq("issueId",
+          issue.getId())) {
+        versionList.add(versionDao.queryForId(affectedVersion.getVersion().getId()));
+      }
+      issue.setVersions(versionList.toArray(new Version[versionList.size()]));
+
+      extendedIssue
+          .setProjectVersions(versionDao.queryForEq("projectId", issue.getProject().getId()));
+    }
+
+    return extendedIssues;
+  }
+
+  private static void assertSameIssues(List<ExtendedIssue> expectedIssues,
+      List<ExtendedIssue> actualIssues) {
+    assertEquals(expectedIssues.size(), actualIssues.size());
+
+    for (int index = 0; index < expectedIssues.size(); index += 1) {
+      ExtendedIssue expectedIssue = expectedIssues.get(index);
+      ExtendedIssue actualIssue = actualIssues.get(index);
+      String key = expectedIssue.getIssue().getKey();
+
+      assertEquals(key, expectedIssue.getIssue().getId(), actualIssue.getIssue().getId());
+      assertSameHistories(key, expectedIssue.getIssue().getChangeLog().getValues(),
+          actualIssue.getIssue().getChangeLog().getValues());
+      assertSameVersions(key, Arrays.asList(expectedIssue.getIssue().getFixVersions()),
+          Arrays.asList(actualIssue.getIssue().getFixVersions()));
+      assertSameVersions(key, Arrays.asList(expectedIssue.getIssue().getVersions()),
+          Arrays.asList(actualIssue.getIssue().getVersions()));
+      assertSameVersions(key, expectedIssue.getVersionRankTable().getReleaseOrder(),
+          actualIssue.getVersionRankTable().getReleaseOrder());
+
+      assertEquals(key, expectedIssue.getOriginalPriority().getId(),
+          actualIssue.getOriginalPriority().getId());
+      assertEquals(key, expectedIssue.getCsvRecord(), actualIssue.getCsvRecord());
+    }
+  }
+
+  private static void assertSameHistories(String key, History[] expectedHistories,
+      History[] actualHistories) {
+    assertEquals(key, expectedHistories.length, actualHistories.length);
+
+    for (int index = 0; index < expectedHistories.length; index += 1) {
+      History expectedHistory = expectedHistories[index];
+      History actualHistory = actualHistories[index];
+      String message = key + " history " + expectedHistory.getId();
+
+      assertEquals(message, expectedHistory.getId(), actualHistory.getId());
+      assertEquals(message, expectedHistory.getIssueId(), actualHistory.getIssueId());
+      assertSameDate(message, expectedHistory.getCreated(), actualHistory.getCreated());
+      assertEquals(message, expectedHistory.getItems().length, actualHistory.getItems().length);
+
+      for (int itemIndex = 0; itemIndex < expectedHistory.getItems().length; itemIndex += 1) {
+        ChangeLogItem expectedItem = expectedHistory.getItems()[itemIndex];
+        ChangeLogItem actualItem = actualHistory.getItems()[itemIndex];
+
+        assertEquals(message, expectedItem.getField(), actualItem.getField());
+        assertEquals(message, expectedItem.getFrom(), actualItem.getFrom());
+        assertEquals(message, expectedItem.getFromString(), actualItem.getFromString());
+        assertEquals(message, expectedItem.getTo(), actualItem.getTo());
+        assertEquals(message, expectedItem.getToString(), actualItem.getToString());
+        assertEquals(message, expectedItem.getHistoryId(), actualItem.getHistoryId());
+      }
+    }
+  }
+
+  private static void assertSameVersions(String key, List<Version> expectedVersions,
+      List<Version> actualVersions) {
+    assertEquals(key, expectedVersions.size(), actualVersions.size());
+
+    for (int index = 0; index < expectedVersions.size(); index += 1) {
+      Version expectedVersion = expectedVersions.get(index);
+      Version actualVersion = actualVersions.get(index);
+      if (expectedVersion == null) {
+        assertNull(key, actualVersion);
+        continue;
+      }
+
+      String message = key + " version " + expectedVersion.getId();
+      assertEquals(message, expectedVersion.getId(), actualVersion.getId());
+      assertEquals(message, expectedVersion.getName(), actualVersion.getName());
+      assertEquals(message, expectedVersion.getProjectId(), actualVersion.getProjectId());
+      assertSameDate(message, expectedVersion.getReleaseDate(), actualVersion.getReleaseDate());
+    }
+  }
+
+  private static void assertSameDate(String message, Date expectedDate, Date actualDate) {
+    if (expectedDate == null) {
+      assertNull(message, actualDate);
+    } else {
+      assertNotNull(message, actualDate);
+      assertEquals(message, expectedDate.getTime(), actualDate.getTime());
+    }
+  }
+
+}
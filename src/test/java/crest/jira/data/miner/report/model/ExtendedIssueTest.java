@@ -0,0 +1,294 @@
+package crest.jira.data.miner.report.model;
+
+import crest.jira.data.retriever.map.ResponseList;
+import crest.jira.data.retriever.model.ChangeLogItem;
+import crest.jira.data.retriever.model.History;
+import crest.jira.data.retriever.model.Issue;
+import crest.jira.data.retriever.model.IssueType;
+import crest.jira.data.retriever.model.Priority;
+import crest.jira.data.retriever.model.Project;
+import crest.jira.data.retriever.model.Resolution;
+import crest.jira.data.retriever.model.Status;
+import crest.jira.data.retriever.model.User;
+import crest.jira.data.retriever.model.Version;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares the derived metrics of issues when memoized and when calculated on
+ * every call.
+ */
+public class ExtendedIssueTest extends TestCase {
+
+  private static final int PROJECTS = 50;
+  private static final int ISSUES_PER_PROJECT = 40;
+  private static final long FIRST_REPORT = 1230768000000L;
+  private static final long REPORT_PERIOD = 8 * 365 * 24 * 60 * 60 * 1000L;
+  private static final String[] RESOLUTIONS = { "1", Resolution.NOT_A_PROBLEM, Resolution.INVALID,
+      Resolution.WONT_FIX, Resolution.INCOMPLETE, Resolution.CANNOT_REPRODUCE };
+  private static final String[] STATUSES = { Status.OPEN, Status.REOPEN, "3", "5", "6" };
+
+  private Logger issueLogger = Logger.getLogger(ExtendedIssue.class.getName());
+  private Level issueLoggerLevel;
+
+  /**
+   * Create the test case.
+   *
+   * @param testName
+   *          name of the test case
+   */
+  public ExtendedIssueTest(String testName) {
+    super(testName);
+  }
+
+  /**
+   * Returns the suite.
+   *
+   * @return the suite of tests being tested.
+   */
+  public static Test suite() {
+    return new TestSuite(ExtendedIssueTest.class);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    // Fix versions sorted before the affected ones are logged as severe.
+    issueLoggerLevel = issueLogger.getLevel();
+    issueLogger.setLevel(Level.OFF);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    issueLogger.setLevel(issueLoggerLevel);
+  }
+
+  /**
+   * Memoized metrics and CSV records match the ones calculated on every call.
+   */
+  public void testMemoizedMetricsMatchCalculated() {
+    Random random = new Random(24L);
+    for (int project = 0; project < PROJECTS; project += 1) {
+      List<Version> projectVersions = createProjectVersions(random, "P" + project);
+      VersionRankTable projectTable = new VersionRankTable(projectVersions);
+
+      for (int index = 0; index < ISSUES_PER_PROJECT; index += 1) {
+        Issue issue = createIssue(random, "P" + project + "-" + index, projectVersions);
+
+        ExtendedIssue memoizedIssue = new ExtendedIssue(issue);
+        memoizedIssue.setVersionRankTable(projectTable);
+        ExtendedIssue calculatedIssue = new ExtendedIssue(issue);
+        calculatedIssue.setVersionRankTable(projectTable);
+        calculatedIssue.setMetricsMemoized(false);
+
+        assertSameMetrics(issue.getKey(), calculatedIssue, memoizedIssue);
+        assertSameMetrics(issue.getKey(), calculatedIssue, memoizedIssue);
+        assertEquals(issue.getKey(), calculatedIssue.getCsvRecord(),
+            memoizedIssue.getCsvRecord());
+      }
+    }
+  }
+
+  /**
+   * Memoized metrics are calculated again when the project versions change.
+   */
+  public void testMemoizedMetricsFollowProjectVersions() {
+    Random random = new Random(2424L);
+    for (int project = 0; project < PROJECTS; project += 1) {
+      List<Version> projectVersions = createProjectVersions(random, "P" + project);
+      List<Version> moreVersions = new ArrayList<>(projectVersions);
+      int newVersions = 1 + random.nextInt(10);
+      for (int index = 0; index < newVersions; index += 1) {
+        moreVersions.add(createVersion(random, "P" + project + "-new-" + index,
+            "5." + index + ".0"));
+      }
+      Collections.shuffle(moreVersions, random);
+
+      for (int index = 0; index < ISSUES_PER_PROJECT; index += 1) {
+        Issue issue = createIssue(random, "P" + project + "-" + index, projectVersions);
+
+        ExtendedIssue memoizedIssue = new ExtendedIssue(issue);
+        memoizedIssue.setVersionRankTable(new VersionRankTable(projectVersions));
+        memoizedIssue.isInflated();
+        memoizedIssue.isDefaultInflation();
+        memoizedIssue.getReleasesToBeFixed();
+
+        memoizedIssue.setProjectVersions(moreVersions);
+        ExtendedIssue freshIssue = new ExtendedIssue(issue);
+        freshIssue.setProjectVersions(moreVersions);
+
+        assertSameMetrics(issue.getKey(), freshIssue, memoizedIssue);
+      }
+    }
+  }
+
+  /**
+   * Closest releases of issues of many projects, swept per project, match the
+   * closest release of every issue.
+   */
+  public void testClosestReleasesMatchSingleIssue() {
+    Random random = new Random(25L);
+    List<ExtendedIssue> issues = new ArrayList<>();
+    for (int project = 0; project < PROJECTS; project += 1) {
+      List<Version> projectVersions = createProjectVersions(random, "P" + project);
+      VersionRankTable projectTable = new VersionRankTable(projectVersions);
+
+      for (int index = 0; index < ISSUES_PER_PROJECT; index += 1) {
+        Issue issue = createIssue(random, "P" + project + "-" + index, projectVersions);
+        Version releasedVersion = projectVersions.get(random.nextInt(projectVersions.size()));
+        if (index % 4 == 0 && releasedVersion.getReleaseDate() != null) {
+          issue.setCreated(new Date(releasedVersion.getReleaseDate().getTime()));
+        }
+
+        ExtendedIssue extendedIssue = new ExtendedIssue(issue);
+        if (index % 10 > 0) {
+          extendedIssue.setVersionRankTable(projectTable);
+        }
+        issues.add(extendedIssue);
+      }
+    }
+    Collections.shuffle(issues, random);
+
+    Version[] closestReleases = ExtendedIssue.getClosestReleases(issues);
+    assertEquals(issues.size(), closestReleases.length);
+    for (int position = 0; position < issues.size(); position += 1) {
+      ExtendedIssue extendedIssue = issues.get(position);
+      if (extendedIssue.getVersionRankTable() != null) {
+        assertEquals(extendedIssue.getIssue().getKey(), extendedIssue.getClosestRelease(),
+            closestReleases[position]);
+      } else {
+        assertNull(extendedIssue.getIssue().getKey(), closestReleases[position]);
+      }
+    }
+  }
+
+  private static void assertSameMetrics(String message, ExtendedIssue expectedIssue,
+      ExtendedIssue actualIssue) {
+    assertEquals(message, expectedIssue.getReleasesToBeFixed(),
+        actualIssue.getReleasesToBeFixed());
+    assertEquals(message, expectedIssue.isInflated(), actualIssue.isInflated());
+    assertEquals(message, expectedIssue.isDefaultInflation(), actualIssue.isDefaultInflation());
+  }
+
+  /**
+   * Creates an issue with random priority, status, resolution, priority
+   * changes, and affected and fix versions among the ones of its project.
+   */
+  private static Issue createIssue(Random random, String key, List<Version> projectVersions) {
+    Issue issue = new Issue();
+    issue.setId(key);
+    issue.setKey(key);
+
+    IssueType issueType = new IssueType();
+    issueType.setId("1");
+    issue.setIssueType(issueType);
+
+    Project project = new Project();
+    project.setId(key.substring(0, key.indexOf('-')));
+    issue.setProject(project);
+
+    User reporter = new User();
+    reporter.setName("reporter" + random.nextInt(10));
+    issue.setReporter(reporter);
+
+    if (random.nextInt(10) > 0) {
+      issue.setPriority(createPriority(String.valueOf(1 + random.nextInt(5))));
+    }
+
+    Status status = new Status();
+    status.setId(STATUSES[random.nextInt(STATUSES.length)]);
+    issue.setStatus(status);
+
+    long created = FIRST_REPORT + (long) (random.nextDouble() * REPORT_PERIOD);
+    issue.setCreated(new Date(created));
+    if (random.nextInt(3) > 0) {
+      Resolution resolution = new Resolution();
+      resolution.setId(RESOLUTIONS[random.nextInt(RESOLUTIONS.length)]);
+      issue.setResolution(resolution);
+      issue.setResolutiondate(new Date(created + random.nextInt(1000000000)));
+    }
+
+    issue.setVersions(pickVersions(random, projectVersions));
+    issue.setFixVersions(pickVersions(random, projectVersions));
+
+    List<History> histories = new ArrayList<>();
+    int priorityChanges = random.nextInt(3);
+    for (int index = 0; index < priorityChanges; index += 1) {
+      ChangeLogItem changeLogItem = new ChangeLogItem();
+      changeLogItem.setField("priority");
+      changeLogItem.setFrom(String.valueOf(1 + random.nextInt(5)));
+      changeLogItem.setFromString("Priority " + changeLogItem.getFrom());
+
+      History history = new History();
+      history.setId(key + "-" + index);
+      history.setCreated(new Date(created + random.nextInt(1000000000)));
+      history.setItems(new ChangeLogItem[] { changeLogItem });
+      histories.add(history);
+    }
+
+    issue.setChangeLog(new ResponseList<History>());
+    issue.getChangeLog().setValues(histories.toArray(new History[histories.size()]));
+    return issue;
+  }
+
+  /**
+   * Creates the versions of a project, shuffled: Releases on random dates, a
+   * fifth of them without release date, and sometimes the pre-4.0.0 and Future
+   * versions.
+   */
+  private static List<Version> createProjectVersions(Random random, String project) {
+    List<Version> versions = new ArrayList<>();
+    int releases = 1 + random.nextInt(30);
+    for (int index = 0; index < releases; index += 1) {
+      versions.add(createVersion(random, project + "-" + index,
+          "4." + random.nextInt(20) + "." + index));
+    }
+
+    if (random.nextBoolean()) {
+      versions.add(createVersion(random, project + "-pre", ReleaseDateComparator.MINIMUM_VERSION));
+    }
+    if (random.nextBoolean()) {
+      versions.add(createVersion(random, project + "-future",
+          ReleaseDateComparator.MAXIMUM_VERSION));
+    }
+
+    Collections.shuffle(versions, random);
+    return versions;
+  }
+
+  private static Version createVersion(Random random, String id, String name) {
+    Date releaseDate = null;
+    if (random.nextInt(5) > 0) {
+      releaseDate = new Date(FIRST_REPORT + (long) (random.nextDouble() * REPORT_PERIOD));
+    }
+
+    return new Version(id, name, releaseDate);
+  }
+
+  private static Priority createPriority(String id) {
+    Priority priority = new Priority();
+    priority.setId(id);
+    priority.setName("Priority " + id);
+    return priority;
+  }
+
+  private static Version[] pickVersions(Random random, List<Version> projectVersions) {
+    int count = random.nextInt(3);
+    Version[] versions = new Version[count];
+    for (int index = 0; index < count; index += 1) {
+      versions[index] = projectVersions.get(random.nextInt(projectVersions.size()));
+    }
+
+    return versions;
+  }
+
+}
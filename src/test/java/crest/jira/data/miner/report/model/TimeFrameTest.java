@@ -0,0 +1,187 @@
+package crest.jira.data.miner.report.model;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Compares the time frames with the labels produced through Calendar, with
+ * ISO weeks: Monday as the first day and four minimal days in the first week.
+ */
+public class TimeFrameTest extends TestCase {
+
+  private static final String[] TIME_ZONES = { "UTC", "America/New_York", "Europe/Berlin",
+      "America/Sao_Paulo", "Australia/Sydney", "Pacific/Chatham", "Asia/Kolkata" };
+  private static final int FIRST_YEAR = 1960;
+  private static final int LAST_YEAR = 2040;
+  private static final int RANDOM_DATES = 20000;
+
+  /**
+   * Create the test case.
+   *
+   * @param testName
+   *          name of the test case
+   */
+  public TimeFrameTest(String testName) {
+    super(testName);
+  }
+
+  /**
+   * Returns the suite.
+   *
+   * @return the suite of tests being tested.
+   */
+  public static Test suite() {
+    return new TestSuite(TimeFrameTest.class);
+  }
+
+  /**
+   * Random dates, in zones with and without daylight saving time.
+   */
+  public void testRandomDates() {
+    Random random = new Random(20161017L);
+    for (String timeZoneId : TIME_ZONES) {
+      TimeZone timeZone = TimeZone.getTimeZone(timeZoneId);
+      long firstMillis = getLocalMillis(timeZone, FIRST_YEAR, Calendar.JANUARY, 1, 0);
+      long lastMillis = getLocalMillis(timeZone, LAST_YEAR, Calendar.DECEMBER, 31, 0);
+
+      for (int index = 0; index < RANDOM_DATES; index += 1) {
+        long epochMillis = firstMillis + (long) (random.nextDouble() * (lastMillis - firstMillis));
+        assertAllTimeFrames(timeZone, epochMillis);
+      }
+    }
+  }
+
+  /**
+   * Dates around local midnight, where daylight saving time changes move the
+   * frame boundaries, and where some zones change the time.
+   */
+  public void testMidnights() {
+    for (String timeZoneId : TIME_ZONES) {
+      TimeZone timeZone = TimeZone.getTimeZone(timeZoneId);
+
+      for (int year = 2014; year <= 2017; year += 1) {
+        for (int dayOfYear = 1; dayOfYear <= 365; dayOfYear += 1) {
+          Calendar calendar = createCalendar(timeZone);
+          calendar.clear();
+          calendar.set(Calendar.YEAR, year);
+          calendar.set(Calendar.DAY_OF_YEAR, dayOfYear);
+          long midnight = calendar.getTimeInMillis();
+
+          assertAllTimeFrames(timeZone, midnight - 1);
+          assertAllTimeFrames(timeZone, midnight);
+          assertAllTimeFrames(timeZone, midnight + 60 * 60 * 1000);
+        }
+      }
+    }
+  }
+
+  /**
+   * Weeks whose ISO year differs from the calendar year.
+   */
+  public void testWeeksAcrossYears() {
+    TimeZone timeZone = TimeZone.getTimeZone("UTC");
+
+    assertEquals("2015-W53", getLabel(TimeFrame.WEEK, timeZone, 2016, Calendar.JANUARY, 3));
+    assertEquals("2016-W01", getLabel(TimeFrame.WEEK, timeZone, 2016, Calendar.JANUARY, 4));
+    assertEquals("2020-W01", getLabel(TimeFrame.WEEK, timeZone, 2019, Calendar.DECEMBER, 30));
+    assertEquals("1969-W52", getLabel(TimeFrame.WEEK, timeZone, 1969, Calendar.DECEMBER, 28));
+    assertEquals("1970-W01", getLabel(TimeFrame.WEEK, timeZone, 1969, Calendar.DECEMBER, 29));
+  }
+
+  /**
+   * The default time zone is used for dates.
+   */
+  public void testDefaultTimeZone() {
+    Date date = new Date(getLocalMillis(TimeZone.getDefault(), 2016, Calendar.MARCH, 27, 2));
+    for (TimeFrame timeFrame : TimeFrame.values()) {
+      assertEquals(getExpectedLabel(timeFrame, createCalendar(TimeZone.getDefault()), date),
+          timeFrame.getLabel(date));
+    }
+  }
+
+  /**
+   * Unknown values of the system property fall back to months.
+   */
+  public void testFromSystemProperties() {
+    String previousValue = System.getProperty(TimeFrame.TIME_FRAME_PROPERTY);
+    try {
+      System.clearProperty(TimeFrame.TIME_FRAME_PROPERTY);
+      assertSame(TimeFrame.MONTH, TimeFrame.fromSystemProperties());
+
+      System.setProperty(TimeFrame.TIME_FRAME_PROPERTY, "quarter");
+      assertSame(TimeFrame.QUARTER, TimeFrame.fromSystemProperties());
+
+      System.setProperty(TimeFrame.TIME_FRAME_PROPERTY, "fortnight");
+      assertSame(TimeFrame.MONTH, TimeFrame.fromSystemProperties());
+    } finally {
+      if (previousValue != null) {
+        System.setProperty(TimeFrame.TIME_FRAME_PROPERTY, previousValue);
+      } else {
+        System.clearProperty(TimeFrame.TIME_FRAME_PROPERTY);
+      }
+    }
+  }
+
+  private static void assertAllTimeFrames(TimeZone timeZone, long epochMillis) {
+    Date date = new Date(epochMillis);
+    Calendar calendar = createCalendar(timeZone);
+
+    for (TimeFrame timeFrame : TimeFrame.values()) {
+      String expectedLabel = getExpectedLabel(timeFrame, calendar, date);
+      String label = timeFrame.getLabel(timeFrame.getOrdinal(epochMillis, timeZone));
+      assertEquals(timeFrame + " of " + epochMillis + " in " + timeZone.getID(), expectedLabel,
+          label);
+    }
+  }
+
+  private static String getLabel(TimeFrame timeFrame, TimeZone timeZone, int year, int month,
+      int day) {
+    return timeFrame.getLabel(timeFrame.getOrdinal(getLocalMillis(timeZone, year, month, day, 12),
+        timeZone));
+  }
+
+  private static long getLocalMillis(TimeZone timeZone, int year, int month, int day, int hour) {
+    Calendar calendar = createCalendar(timeZone);
+    calendar.clear();
+    calendar.set(year, month, day, hour, 0, 0);
+    return calendar.getTimeInMillis();
+  }
+
+  private static Calendar createCalendar(TimeZone timeZone) {
+    Calendar calendar = new GregorianCalendar(timeZone);
+    calendar.setFirstDayOfWeek(Calendar.MONDAY);
+    calendar.setMinimalDaysInFirstWeek(4);
+    return calendar;
+  }
+
+  private static String getExpectedLabel(TimeFrame timeFrame, Calendar calendar, Date date) {
+    calendar.setTime(date);
+    int year = calendar.get(Calendar.YEAR);
+    int month = calendar.get(Calendar.MONTH);
+
+    switch (timeFrame) {
+      case WEEK:
+        return calendar.getWeekYear() + "-W" + twoDigits(calendar.get(Calendar.WEEK_OF_YEAR));
+      case MONTH:
+        return year + "-" + twoDigits(month + 1);
+      case BI_MONTH:
+        return year + "-B0" + (month / 2 + 1);
+      case QUARTER:
+        return year + "-Q" + (month / 3 + 1);
+      default:
+        return String.valueOf(year);
+    }
+  }
+
+  private static String twoDigits(int number) {
+    return number < 10 ? "0" + number : String.valueOf(number);
+  }
+
+}
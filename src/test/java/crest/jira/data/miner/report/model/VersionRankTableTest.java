@@ -0,0 +1,277 @@
+package crest.jira.data.miner.report.model;
+
+import crest.jira.data.retriever.model.Version;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compares the version rank table with sorting and scanning the versions, as
+ * done before the table existed. Versions include the special names and
+ * versions without release date.
+ */
+public class VersionRankTableTest extends TestCase {
+
+  private static final int PROJECTS = 200;
+  private static final long FIRST_RELEASE = 1230768000000L;
+  private static final long RELEASE_PERIOD = 8 * 365 * 24 * 60 * 60 * 1000L;
+
+  /**
+   * Create the test case.
+   *
+   * @param testName
+   *          name of the test case
+   */
+  public VersionRankTableTest(String testName) {
+    super(testName);
+  }
+
+  /**
+   * Returns the suite.
+   *
+   * @return the suite of tests being tested.
+   */
+  public static Test suite() {
+    return new TestSuite(VersionRankTableTest.class);
+  }
+
+  /**
+   * Name and release ranks of project versions.
+   */
+  public void testRanksMatchSortedVersions() {
+    Random random = new Random(23L);
+    for (int project = 0; project < PROJECTS; project += 1) {
+      List<Version> projectVersions = createVersions(random, "P" + project);
+      assertSameRanks(sortByRelease(projectVersions), new VersionRankTable(projectVersions));
+    }
+  }
+
+  /**
+   * Ranks of versions loaded again from the database: Distinct instances with
+   * the same fields as the ones in the table.
+   */
+  public void testRanksOfLoadedCopies() {
+    Random random = new Random(2424L);
+    for (int project = 0; project < PROJECTS; project += 1) {
+      List<Version> projectVersions = createVersions(random, "P" + project);
+      VersionRankTable rankTable = new VersionRankTable(projectVersions);
+
+      for (Version version : rankTable.getReleaseOrder()) {
+        Version copy = copyVersion(version);
+        assertNotSame(version, copy);
+        assertEquals(rankTable.getNameRank(version), rankTable.getNameRank(copy));
+        assertEquals(rankTable.getReleaseRank(version), rankTable.getReleaseRank(copy));
+      }
+
+      Version missingVersion = createVersions(random, "O" + project).get(0);
+      assertNull(rankTable.getNameRank(missingVersion));
+      assertNull(rankTable.getReleaseRank(missingVersion));
+    }
+  }
+
+  /**
+   * Tables for the versions of an issue, including versions missing from the
+   * project.
+   */
+  public void testForIssueMatchesJoinedVersions() {
+    Random random = new Random(2323L);
+    for (int project = 0; project < PROJECTS; project += 1) {
+      List<Version> projectVersions = createVersions(random, "P" + project);
+      List<Version> otherVersions = createVersions(random, "O" + project);
+      VersionRankTable projectTable = new VersionRankTable(projectVersions);
+
+      for (int issue = 0; issue < 20; issue += 1) {
+        Version[] affectedVersions = pickVersions(random, projectVersions, otherVersions);
+        Version[] fixVersions = pickVersions(random, projectVersions, otherVersions);
+
+        List<Version> joinedVersions = new ArrayList<>(projectVersions);
+        joinedVersions.addAll(Arrays.asList(affectedVersions));
+        joinedVersions.addAll(Arrays.asList(fixVersions));
+
+        assertSameRanks(sortByRelease(joinedVersions),
+            VersionRankTable.forIssue(projectTable, affectedVersions, fixVersions));
+      }
+    }
+  }
+
+  /**
+   * Issues whose versions belong to the project share the project table.
+   */
+  public void testForIssueSharesProjectTable() {
+    Random random = new Random(232323L);
+    List<Version> projectVersions = createVersions(random, "P");
+    VersionRankTable projectTable = new VersionRankTable(projectVersions);
+
+    Version[] affectedVersions = { projectVersions.get(0), projectVersions.get(3) };
+    Version[] fixVersions = { projectVersions.get(projectVersions.size() - 1) };
+    assertSame(projectTable,
+        VersionRankTable.forIssue(projectTable, affectedVersions, fixVersions));
+    assertSame(projectTable,
+        VersionRankTable.forIssue(projectTable, new Version[0], new Version[0]));
+
+    Version[] missingVersions = { createVersions(random, "O").get(0) };
+    assertNotSame(projectTable,
+        VersionRankTable.forIssue(projectTable, affectedVersions, missingVersions));
+  }
+
+  /**
+   * Closest releases, by binary search and by sweep, of random dates and of the
+   * release dates themselves.
+   */
+  public void testClosestReleasesMatchScan() {
+    Random random = new Random(2525L);
+    for (int project = 0; project < PROJECTS; project += 1) {
+      List<Version> projectVersions = createVersions(random, "P" + project);
+      List<Version> releaseOrder = sortByRelease(projectVersions);
+      VersionRankTable rankTable = new VersionRankTable(projectVersions);
+
+      List<Long> dates = new ArrayList<>();
+      for (int index = 0; index < 50; index += 1) {
+        dates.add(FIRST_RELEASE - RELEASE_PERIOD / 10
+            + (long) (random.nextDouble() * RELEASE_PERIOD * 1.2));
+      }
+      for (Version version : projectVersions) {
+        if (version.getReleaseDate() != null) {
+          long releaseDate = version.getReleaseDate().getTime();
+          dates.add(releaseDate - 1);
+          dates.add(releaseDate);
+          dates.add(releaseDate + 1);
+        }
+      }
+      Collections.sort(dates);
+
+      long[] sortedDates = new long[dates.size()];
+      for (int index = 0; index < dates.size(); index += 1) {
+        sortedDates[index] = dates.get(index);
+      }
+      Version[] closestReleases = rankTable.getClosestReleases(sortedDates);
+
+      for (int index = 0; index < sortedDates.length; index += 1) {
+        Version expectedRelease = scanClosestRelease(releaseOrder, sortedDates[index]);
+        assertEquals(expectedRelease, rankTable.getClosestRelease(sortedDates[index]));
+        assertEquals(expectedRelease, closestReleases[index]);
+      }
+    }
+  }
+
+  /**
+   * Creates the versions of a project: Numbered versions released on random
+   * dates, not in name order, some of them without release date, and the
+   * pre-4.0.0 and Future versions, with and without date.
+   */
+  static List<Version> createVersions(Random random, String prefix) {
+    List<Version> versions = new ArrayList<>();
+    int numberedVersions = 1 + random.nextInt(30);
+    for (int index = 0; index < numberedVersions; index += 1) {
+      String name = "4." + random.nextInt(20) + "." + index;
+      versions.add(createVersion(random, prefix + "-" + index, name));
+    }
+
+    if (random.nextBoolean()) {
+      versions.add(createVersion(random, prefix + "-pre", ReleaseDateComparator.MINIMUM_VERSION));
+    }
+    if (random.nextBoolean()) {
+      versions.add(createVersion(random, prefix + "-future",
+          ReleaseDateComparator.MAXIMUM_VERSION));
+    }
+
+    Collections.shuffle(versions, random);
+    return versions;
+  }
+
+  private static Version createVersion(Random random, String id, String name) {
+    Date releaseDate = null;
+    if (random.nextInt(5) > 0) {
+      releaseDate = new Date(FIRST_RELEASE + (long) (random.nextDouble() * RELEASE_PERIOD));
+    }
+
+    return new Version(id, name, releaseDate);
+  }
+
+  private static Version copyVersion(Version version) {
+    Date releaseDate = null;
+    if (version.getReleaseDate() != null) {
+      releaseDate = new Date(version.getReleaseDate().getTime());
+    }
+
+    return new Version(version.getId(), version.getName(), releaseDate);
+  }
+
+  private static Version[] pickVersions(Random random, List<Version> projectVersions,
+      List<Version> otherVersions) {
+    int count = random.nextInt(4);
+    Version[] versions = new Version[count];
+    for (int index = 0; index < count; index += 1) {
+      List<Version> source = random.nextInt(4) == 0 ? otherVersions : projectVersions;
+      versions[index] = source.get(random.nextInt(source.size()));
+    }
+
+    return versions;
+  }
+
+  /**
+   * Sorts versions as ExtendedIssue did before the table: A TreeSet with the
+   * ReleaseDateComparator, filled in the order given.
+   */
+  static List<Version> sortByRelease(List<Version> versions) {
+    Set<Version> releaseOrder = new TreeSet<>(new ReleaseDateComparator());
+    releaseOrder.addAll(versions);
+    return new ArrayList<>(releaseOrder);
+  }
+
+  /**
+   * Finds a version on the release order sorted by name, scanning it as
+   * ExtendedIssue did before the table.
+   */
+  static Integer scanNameRank(List<Version> releaseOrder, Version version) {
+    List<Version> nameOrder = new ArrayList<>(releaseOrder);
+    Collections.sort(nameOrder, new VersionNameComparator());
+
+    for (int index = 0; index < nameOrder.size(); index += 1) {
+      if (nameOrder.get(index).equals(version)) {
+        return index;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Finds the first version released after a date, scanning the release order
+   * as ExtendedIssue did before the table.
+   */
+  private static Version scanClosestRelease(List<Version> releaseOrder, long epochMillis) {
+    Date date = new Date(epochMillis);
+    for (Version version : releaseOrder) {
+      Date releaseDate = version.getReleaseDate();
+      if (releaseDate != null && releaseDate.compareTo(date) > 0) {
+        return version;
+      }
+    }
+
+    return null;
+  }
+
+  private static void assertSameRanks(List<Version> releaseOrder, VersionRankTable rankTable) {
+    assertEquals(releaseOrder, rankTable.getReleaseOrder());
+    assertEquals(releaseOrder.size(), rankTable.size());
+
+    for (int index = 0; index < releaseOrder.size(); index += 1) {
+      Version version = releaseOrder.get(index);
+      assertEquals(scanNameRank(releaseOrder, version), rankTable.getNameRank(version));
+      assertEquals(Integer.valueOf(releaseOrder.indexOf(version)),
+          rankTable.getReleaseRank(version));
+    }
+  }
+
+}